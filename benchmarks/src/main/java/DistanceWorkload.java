@@ -0,0 +1,26 @@
+import benchmarks.Workload;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Squared euclidean distance of a batch of pairs of random points
+ */
+public final class DistanceWorkload implements Workload {
+    private final Point[] first, second;
+
+    /**
+     * Constructor
+     * @param dimension dimension of the points
+     * @param pairs number of pairs of points
+     */
+    public DistanceWorkload(int dimension, int pairs) {
+        this.first = SyntheticData.points(pairs, dimension, 1);
+        this.second = SyntheticData.points(pairs, dimension, 2);
+    }
+
+    @Override
+    public void run(Blackhole blackhole) {
+        for (int i = 0; i < first.length; i++) {
+            blackhole.consume(Point.getSquaredEuclideanDistance(first[i], second[i]));
+        }
+    }
+}
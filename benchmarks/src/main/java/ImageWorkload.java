@@ -0,0 +1,60 @@
+import benchmarks.Workload;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Conversion of a synthetic image to points, or export of its segmentation as PNG
+ */
+public final class ImageWorkload implements Workload {
+    private final String operation;
+    private final BufferedImage img;
+    private final int width, height;
+    private final ArrayList<Cluster<RGBPixel>> clusters;
+    private final Clustering clustering;
+    private final File output;
+
+    /**
+     * Constructor
+     * @param operation "pixelize", "toDataset", "exportClusters" or "exportClustering"
+     * @param width width of the image
+     * @param height height of the image
+     * @param k number of colours of the segmentation to export
+     * @throws IOException if the temporary output file can't be created
+     */
+    public ImageWorkload(String operation, int width, int height, int k) throws IOException {
+        this.operation = operation;
+        this.img = SyntheticData.image(width, height, 1);
+        this.width = width;
+        this.height = height;
+        try (KMeans<RGBPixel> kmeans = new KMeans<>(Runtime.getRuntime().availableProcessors())) {
+            this.clusters = "exportClusters".equals(operation) ? kmeans.clusterize(k, Image.pixelize(img)) : null;
+            this.clustering = "exportClustering".equals(operation) ? kmeans.clusterize(k, Image.toDataset(img)) : null;
+        }
+        this.output = File.createTempFile("benchmark", ".png");
+        this.output.deleteOnExit();
+    }
+
+    @Override
+    public void run(Blackhole blackhole) throws IOException {
+        switch (operation) {
+            case "pixelize":
+                blackhole.consume(Image.pixelize(img));
+                break;
+            case "toDataset":
+                blackhole.consume(Image.toDataset(img));
+                break;
+            case "exportClusters":
+                Image.export(clusters, output.getPath(), width, height);
+                break;
+            case "exportClustering":
+                Image.export(clustering, output.getPath(), width, height);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+import benchmarks.Workload;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Clusterization of synthetic pixels
+ */
+public final class KMeansWorkload implements Workload {
+    private final int k;
+    private final KMeans<RGBPixel> kmeans;
+    private final SetOfPoints<RGBPixel> points;
+    private final Dataset dataset;
+
+    /**
+     * Constructor
+     * @param k number of clusters
+     * @param size number of pixels
+     * @param input "dataset" to clusterize a ColumnarDataset, "points" to clusterize a SetOfPoints
+     * @param parallelism number of threads of the clusterization
+     * @param assignment name of the assignment strategy
+     * @param metric name of the distance metric
+     */
+    public KMeansWorkload(int k, int size, String input, int parallelism, String assignment, String metric) {
+        this.k = k;
+        this.kmeans = new KMeans<>(parallelism);
+        this.kmeans.setAssignmentStrategy(AssignmentStrategy.valueOf(assignment));
+        this.kmeans.setDistanceMetric(DistanceMetric.valueOf(metric));
+        SetOfPoints<RGBPixel> pixels = SyntheticData.pixels(size, 1);
+        if ("points".equals(input)) {
+            this.points = pixels;
+            this.dataset = null;
+        } else if ("dataset".equals(input)) {
+            this.points = null;
+            this.dataset = new ColumnarDataset(pixels);
+        } else {
+            throw new IllegalArgumentException("Unknown input: " + input);
+        }
+    }
+
+    @Override
+    public void run(Blackhole blackhole) {
+        if (dataset != null) {
+            blackhole.consume(kmeans.clusterize(k, dataset));
+        } else {
+            blackhole.consume(kmeans.clusterize(k, points));
+        }
+    }
+
+    @Override
+    public void close() {
+        kmeans.close();
+    }
+}
@@ -0,0 +1,104 @@
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Generators of synthetic data for the benchmarks, so that they don't depend on the images in src/image.
+ * All the generators are deterministic for a given seed
+ */
+public final class SyntheticData {
+    private SyntheticData() { }
+
+    /**
+     * Generates points of R^dimension with uniformly distributed coordinates in [0, 255]
+     * @param size number of points
+     * @param dimension dimension of the points
+     * @param seed seed of the generator
+     * @return points
+     */
+    public static Point[] points(int size, int dimension, long seed) {
+        Random random = new Random(seed);
+        Point[] points = new Point[size];
+        float[] coordinates = new float[dimension];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < dimension; j++) {
+                coordinates[j] = random.nextFloat() * 255;
+            }
+            points[i] = new Point(coordinates);
+        }
+        return points;
+    }
+
+    /**
+     * Generates an image that resembles a photo: smooth colour gradients with some blobs of almost uniform colour,
+     * plus noise
+     * @param width width of the image
+     * @param height height of the image
+     * @param seed seed of the generator
+     * @return image
+     */
+    public static BufferedImage image(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int blobs = 12;
+        int[] blobX = new int[blobs], blobY = new int[blobs], blobRadius = new int[blobs], blobColor = new int[blobs];
+        for (int b = 0; b < blobs; b++) {
+            blobX[b] = random.nextInt(width);
+            blobY[b] = random.nextInt(height);
+            blobRadius[b] = 1 + random.nextInt(Math.max(1, Math.min(width, height) / 4));
+            blobColor[b] = random.nextInt(1 << 24);
+        }
+
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int rgb = -1;
+                for (int b = 0; b < blobs && rgb < 0; b++) {
+                    long dx = x - blobX[b], dy = y - blobY[b];
+                    if (dx*dx + dy*dy <= (long) blobRadius[b]*blobRadius[b]) {
+                        rgb = blobColor[b];
+                    }
+                }
+                int r, g, bl;
+                if (rgb < 0) {
+                    r = 255 * x / width;
+                    g = 255 * y / height;
+                    bl = 255 * (x + y) / (width + height);
+                } else {
+                    r = (rgb >> 16) & 0xFF;
+                    g = (rgb >> 8) & 0xFF;
+                    bl = rgb & 0xFF;
+                }
+                img.setRGB(x, y, (noise(r, random) << 16) | (noise(g, random) << 8) | noise(bl, random));
+            }
+        }
+        return img;
+    }
+
+    /**
+     * Generates the pixels of a synthetic image as a set of points
+     * @param size number of pixels
+     * @param seed seed of the generator
+     * @return set of pixels
+     */
+    public static SetOfPoints<RGBPixel> pixels(int size, long seed) {
+        int width = (int) Math.ceil(Math.sqrt(size));
+        BufferedImage img = image(width, (size + width - 1) / width, seed);
+        SetOfPoints<RGBPixel> data = new SetOfPoints<>(Domain.RGB());
+        for (int i = 0; i < size; i++) {
+            int x = i % width, y = i / width;
+            int rgb = img.getRGB(x, y);
+            data.add(new RGBPixel(x, y, (rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF));
+        }
+        return data;
+    }
+
+    /**
+     * Adds a small noise to a colour channel
+     * @param channel value of the channel
+     * @param random generator
+     * @return value with noise, in [0, 255]
+     */
+    private static int noise(int channel, Random random) {
+        int value = channel + random.nextInt(9) - 4;
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+}
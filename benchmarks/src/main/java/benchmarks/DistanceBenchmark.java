@@ -0,0 +1,38 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of Point.getSquaredEuclideanDistance on batches of random pairs of points
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceBenchmark {
+    /**
+     * Pairs of points measured by each invocation
+     */
+    public static final int PAIRS = 1024;
+
+    @Param({"3", "16", "64"})
+    public int dimension;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setup() throws ReflectiveOperationException {
+        workload = Workload.create("DistanceWorkload", dimension, PAIRS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void squaredEuclideanDistance(Blackhole blackhole) throws Exception {
+        workload.run(blackhole);
+    }
+}
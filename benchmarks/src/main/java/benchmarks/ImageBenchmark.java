@@ -0,0 +1,62 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the conversion of a synthetic image to points and of the export of its segmentation as PNG
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class ImageBenchmark {
+    /**
+     * Size of the image as WIDTHxHEIGHT
+     */
+    @Param({"1920x1080", "3840x2160"})
+    public String resolution;
+
+    /**
+     * Number of colours of the exported segmentation
+     */
+    @Param({"8"})
+    public int k;
+
+    private Workload pixelize, toDataset, exportClusters, exportClustering;
+
+    @Setup(Level.Trial)
+    public void setup() throws ReflectiveOperationException {
+        String[] size = resolution.split("x");
+        int width = Integer.parseInt(size[0]);
+        int height = Integer.parseInt(size[1]);
+        pixelize = Workload.create("ImageWorkload", "pixelize", width, height, k);
+        toDataset = Workload.create("ImageWorkload", "toDataset", width, height, k);
+        exportClusters = Workload.create("ImageWorkload", "exportClusters", width, height, k);
+        exportClustering = Workload.create("ImageWorkload", "exportClustering", width, height, k);
+    }
+
+    @Benchmark
+    public void pixelize(Blackhole blackhole) throws Exception {
+        pixelize.run(blackhole);
+    }
+
+    @Benchmark
+    public void toDataset(Blackhole blackhole) throws Exception {
+        toDataset.run(blackhole);
+    }
+
+    @Benchmark
+    public void exportClusters(Blackhole blackhole) throws Exception {
+        exportClusters.run(blackhole);
+    }
+
+    @Benchmark
+    public void exportClustering(Blackhole blackhole) throws Exception {
+        exportClustering.run(blackhole);
+    }
+}
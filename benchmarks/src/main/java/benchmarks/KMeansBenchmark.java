@@ -0,0 +1,62 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of KMeans.clusterize on synthetic RGB data, across k, data size, input representation, parallelism,
+ * assignment strategy and distance metric
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class KMeansBenchmark {
+    @Param({"2", "8", "14", "20"})
+    public int k;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    /**
+     * "dataset" for the columnar dataset, "points" for the SetOfPoints of RGBPixel
+     */
+    @Param({"dataset", "points"})
+    public String input;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    /**
+     * Name of an AssignmentStrategy
+     */
+    @Param({"BRUTE_FORCE", "HAMERLY", "KD_TREE"})
+    public String assignment;
+
+    /**
+     * Name of a DistanceMetric (the others can be selected with -p metric=MANHATTAN,COSINE,CIELAB)
+     */
+    @Param({"EUCLIDEAN"})
+    public String metric;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setup() throws ReflectiveOperationException {
+        workload = Workload.create("KMeansWorkload", k, size, input, parallelism, assignment, metric);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        workload.close();
+    }
+
+    @Benchmark
+    public void clusterize(Blackhole blackhole) throws Exception {
+        workload.run(blackhole);
+    }
+}
@@ -0,0 +1,37 @@
+package benchmarks;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Operation measured by a benchmark.
+ * The classes of the project are in the default package, that can't be referenced from a named package (and JMH
+ * requires the benchmarks to be in one), so every measured operation is implemented in the default package by a class
+ * that implements this interface and that is instantiated by name
+ */
+public interface Workload extends AutoCloseable {
+    /**
+     * Executes the operation once
+     * @param blackhole sink for the results, to avoid dead code elimination
+     * @throws Exception if the operation fails
+     */
+    void run(Blackhole blackhole) throws Exception;
+
+    /**
+     * Releases the resources of the workload, e.g. the pool of a parallel clusterization (by default none)
+     * @throws Exception if the resources can't be released
+     */
+    @Override
+    default void close() throws Exception {
+    }
+
+    /**
+     * Creates a workload
+     * @param className name of the class in the default package
+     * @param args arguments of its (only) public constructor
+     * @return workload
+     * @throws ReflectiveOperationException if the class can't be instantiated with these arguments
+     */
+    static Workload create(String className, Object... args) throws ReflectiveOperationException {
+        return (Workload) Class.forName(className).getConstructors()[0].newInstance(args);
+    }
+}
@@ -0,0 +1,192 @@
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * Dataset stored off-heap, column by column, in a memory segment of the Foreign Function & Memory API: the points
+ * don't take heap space and the garbage collector never scans or moves them, so the size of the dataset is limited only
+ * by the memory of the machine (and by Integer.MAX_VALUE points) and not by the size of the heap.
+ * The segment is allocated in an arena, whose lifetime is explicit: the dataset must not be used after its arena is
+ * closed. The arena must be shared (or global, or automatic) to clusterize the dataset on a pool.
+ * The kernels of KMeans read the coordinates straight from the segment, through {@link #getValue(int, int)}.
+ * Only the points are off-heap: a clusterization still keeps on the heap the labels (4 bytes per point) and, depending
+ * on its configuration, the lower bounds of HAMERLY (4 bytes per point), the copy of the coordinates of the kd-tree of
+ * KD_TREE (4 bytes per point and dimension, plus 4), the transformed points of COSINE and CIELAB (4 bytes per point and
+ * dimension) or the sorting buffers of MANHATTAN (8 bytes per point, 12 if weighted). So the heap stays small with the
+ * EUCLIDEAN metric and the BRUTE_FORCE or HAMERLY strategy.
+ * It needs JDK 22+, so it is compiled separately from src (see the README)
+ */
+public final class SegmentDataset implements Dataset, AutoCloseable {
+    private static final ValueLayout.OfFloat FLOAT = ValueLayout.JAVA_FLOAT;
+
+    private final Domain domain;
+    private final int size;
+
+    /**
+     * Lower-bounds of the domain, cached to check the values without copying them at every set
+     */
+    private final float[] lowerBounds;
+
+    /**
+     * Upper-bounds of the domain, cached to check the values without copying them at every set
+     */
+    private final float[] upperBounds;
+
+    /**
+     * Coordinates of the points: the j-th coordinate of the i-th point is the float at index j*size + i
+     */
+    private final MemorySegment segment;
+
+    /**
+     * Arena of the segment if it is owned by the dataset (closed by {@link #close()}), null if it is owned by the caller
+     */
+    private final Arena ownArena;
+
+    /**
+     * Constructor of a dataset in its own shared arena, released by {@link #close()}
+     * @param domain domain to which the points belong
+     * @param size number of points
+     * @throws NullPointerException if the domain is null
+     * @throws IllegalArgumentException if size is < 0
+     */
+    public SegmentDataset(final Domain domain, int size) throws NullPointerException, IllegalArgumentException {
+        this(domain, size, null);
+    }
+
+    /**
+     * Constructor of a dataset in an arena owned by the caller: the memory is released when the arena is closed, and
+     * {@link #close()} does nothing
+     * @param domain domain to which the points belong
+     * @param size number of points
+     * @param arena arena in which the segment is allocated, null for an own shared arena
+     * @throws NullPointerException if the domain is null
+     * @throws IllegalArgumentException if size is < 0
+     */
+    public SegmentDataset(final Domain domain, int size, final Arena arena) throws NullPointerException, IllegalArgumentException {
+        if (domain == null) {
+            throw new NullPointerException("Domain can't be null");
+        }
+        if (size < 0) {
+            throw new IllegalArgumentException("Size must be non-negative");
+        }
+        this.domain = domain;
+        this.size = size;
+        this.lowerBounds = domain.getLowerBounds();
+        this.upperBounds = domain.getUpperBounds();
+        this.ownArena = (arena == null) ? Arena.ofShared() : null;
+        this.segment = ((arena == null) ? ownArena : arena).allocate(FLOAT.byteSize() * domain.getDimension() * size, FLOAT.byteAlignment());
+    }
+
+    /**
+     * Copies a dataset off-heap, e.g. a dataset read in slices from a file
+     * @param data points to copy, in the same order
+     * @param arena arena in which the segment is allocated, null for an own shared arena
+     * @return dataset
+     * @throws NullPointerException if the dataset is null
+     */
+    public static SegmentDataset copyOf(final Dataset data, final Arena arena) throws NullPointerException {
+        if (data == null) {
+            throw new NullPointerException("Dataset can't be null");
+        }
+        SegmentDataset copy = new SegmentDataset(data.getDomain(), data.size(), arena);
+        int dimension = data.getDomain().getDimension();
+        for (int j = 0; j < dimension; j++) {
+            long offset = (long) j * copy.size;
+            for (int i = 0; i < copy.size; i++) {
+                copy.segment.setAtIndex(FLOAT, offset + i, data.getValue(i, j));
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Copies a set of points off-heap
+     * @param sop set of points to copy, in the same order
+     * @param arena arena in which the segment is allocated, null for an own shared arena
+     * @return dataset
+     * @throws NullPointerException if the set of points is null
+     */
+    public static SegmentDataset copyOf(final SetOfPoints<? extends Point> sop, final Arena arena) throws NullPointerException {
+        if (sop == null) {
+            throw new NullPointerException("Set of points can't be null");
+        }
+        SegmentDataset copy = new SegmentDataset(sop.getDomain(), sop.size(), arena);
+        int dimension = sop.getDomain().getDimension();
+        int i = 0;
+        for (Point p : sop.points) {
+            for (int j = 0; j < dimension; j++) {
+                copy.segment.setAtIndex(FLOAT, (long) j * copy.size + i, p.getCoordinate(j + 1));
+                    // cannot throws exception because SetOfPoint ensure that all the points respect the dimension of the domain
+            }
+            i++;
+        }
+        return copy;
+    }
+
+    @Override
+    public Domain getDomain() {
+        return domain;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public float getValue(int index, int dimension) {
+        return segment.getAtIndex(FLOAT, (long) dimension * size + index);
+    }
+
+    /**
+     * Sets a coordinate of a point
+     * @param index index of the point (0-indexed)
+     * @param dimension coordinate to set (0-indexed)
+     * @param value value of the coordinate
+     * @throws IndexOutOfBoundsException if the index or the dimension are invalid
+     * @throws IllegalArgumentException if the value doesn't belong to the domain
+     * @throws IllegalStateException if the arena is closed
+     */
+    public void setValue(int index, int dimension, float value) throws IndexOutOfBoundsException, IllegalArgumentException, IllegalStateException {
+        if (dimension < 0 || dimension >= lowerBounds.length || index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Invalid index or dimension");
+        }
+        if (value < lowerBounds[dimension] || value > upperBounds[dimension]) {
+            throw new IllegalArgumentException("Incompatible value");
+        }
+        segment.setAtIndex(FLOAT, (long) dimension * size + index, value);
+    }
+
+    /**
+     * Gets the segment of the coordinates, without copying it, e.g. to fill it from a native library or a file
+     * channel. The values are not checked against the domain
+     * @return segment: the j-th coordinate of the i-th point is the float at index j*size + i
+     */
+    public MemorySegment getSegment() {
+        return segment;
+    }
+
+    /**
+     * Copies the points in a set of points (on the heap)
+     * @return set of points, in the same order
+     * @throws IllegalArgumentException if a point of the segment doesn't belong to the domain
+     */
+    public SetOfPoints<Point> toSetOfPoints() throws IllegalArgumentException {
+        SetOfPoints<Point> sop = new SetOfPoints<>(domain);
+        for (int p = 0; p < size; p++) {
+            sop.add(getPoint(p));
+        }
+        return sop;
+    }
+
+    /**
+     * Releases the memory of the segment if the dataset owns its arena; otherwise it does nothing, as the memory is
+     * released with the arena of the caller
+     */
+    @Override
+    public void close() {
+        if (ownArena != null) {
+            ownArena.close();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD assignment kernel on the Vector API: every lane holds a different point, so a block of as many points as the
+ * lanes of the preferred vector (8 on AVX2, 16 on AVX-512) is compared with all the centroids at once, reading the
+ * coordinates straight from the columns.
+ * It needs JDK 16+ and the module jdk.incubator.vector both at compile time and at run time
+ * (--add-modules jdk.incubator.vector); it is loaded by reflection by {@link AssignmentKernel}, so the rest of the
+ * project doesn't depend on it
+ */
+final class VectorKernel implements AssignmentKernel {
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = VectorSpecies.of(int.class, FLOATS.vectorShape());
+
+    @Override
+    public void assign(float[][] columns, int from, int to, float[] centroids, int k, int[] labels) {
+        int dimension = columns.length;
+        int p = from;
+        int bound = from + FLOATS.loopBound(to - from);
+        if (dimension == 3) {
+            for (; p < bound; p += FLOATS.length()) {
+                assignBlock3(columns, p, centroids, k, labels);
+            }
+        } else {
+            for (; p < bound; p += FLOATS.length()) {
+                assignBlock(columns, p, centroids, k, labels);
+            }
+        }
+
+        for (; p < to; p++) {      // points that don't fill a vector
+            float minDistance = Float.POSITIVE_INFINITY;
+            int nearestCentroid = 0;
+            for (int c = 0, offset = 0; c < k; c++, offset += dimension) {
+                float distance = 0;
+                for (int j = 0; j < dimension; j++) {
+                    float difference = centroids[offset + j] - columns[j][p];
+                    distance += difference*difference;
+                }
+                if (distance < minDistance) {
+                    minDistance = distance;
+                    nearestCentroid = c;
+                }
+            }
+            labels[p] = nearestCentroid;
+        }
+    }
+
+    /**
+     * Assigns a block of points, for any dimension
+     * @param columns coordinates of the points
+     * @param p first index of the block
+     * @param centroids centroids, flattened
+     * @param k number of centroids
+     * @param labels clusterization
+     */
+    private static void assignBlock(float[][] columns, int p, float[] centroids, int k, int[] labels) {
+        int dimension = columns.length;
+        FloatVector minDistance = FloatVector.broadcast(FLOATS, Float.POSITIVE_INFINITY);
+        IntVector nearestCentroid = IntVector.zero(INTS);
+        for (int c = 0, offset = 0; c < k; c++, offset += dimension) {
+            FloatVector difference = FloatVector.fromArray(FLOATS, columns[0], p).sub(centroids[offset]);
+            FloatVector distance = difference.mul(difference);
+            for (int j = 1; j < dimension; j++) {
+                difference = FloatVector.fromArray(FLOATS, columns[j], p).sub(centroids[offset + j]);
+                distance = distance.add(difference.mul(difference));
+            }
+            VectorMask<Float> nearer = distance.lt(minDistance);
+            minDistance = minDistance.blend(distance, nearer);
+            nearestCentroid = nearestCentroid.blend(c, nearer.cast(INTS));
+        }
+        nearestCentroid.intoArray(labels, p);
+    }
+
+    /**
+     * Assigns a block of points, specialized for 3 dimensions (e.g. RGB): the coordinates are loaded once per block
+     * @param columns coordinates of the points
+     * @param p first index of the block
+     * @param centroids centroids, flattened
+     * @param k number of centroids
+     * @param labels clusterization
+     */
+    private static void assignBlock3(float[][] columns, int p, float[] centroids, int k, int[] labels) {
+        FloatVector x = FloatVector.fromArray(FLOATS, columns[0], p);
+        FloatVector y = FloatVector.fromArray(FLOATS, columns[1], p);
+        FloatVector z = FloatVector.fromArray(FLOATS, columns[2], p);
+        FloatVector minDistance = FloatVector.broadcast(FLOATS, Float.POSITIVE_INFINITY);
+        IntVector nearestCentroid = IntVector.zero(INTS);
+        for (int c = 0, offset = 0; c < k; c++, offset += 3) {
+            FloatVector dx = x.sub(centroids[offset]);
+            FloatVector dy = y.sub(centroids[offset + 1]);
+            FloatVector dz = z.sub(centroids[offset + 2]);
+            FloatVector distance = dx.mul(dx).add(dy.mul(dy)).add(dz.mul(dz));
+            VectorMask<Float> nearer = distance.lt(minDistance);
+            minDistance = minDistance.blend(distance, nearer);
+            nearestCentroid = nearestCentroid.blend(c, nearer.cast(INTS));
+        }
+        nearestCentroid.intoArray(labels, p);
+    }
+}
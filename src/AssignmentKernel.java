@@ -0,0 +1,48 @@
+/**
+ * Kernel that assigns a block of points, stored column by column, to the nearest centroid.
+ * A kernel must compute the squared euclidean distances with the same arithmetic of the scalar assignment of
+ * {@link UpdateTask} (sum over the coordinates, in order, of the squared differences, without fused multiply-add) and
+ * break the ties in favour of the lowest centroid, so that the clusterization doesn't depend on the kernel in use
+ */
+interface AssignmentKernel {
+    /**
+     * Name of the class of the SIMD kernel, compiled separately (see src-vector) because it needs the incubator module
+     * jdk.incubator.vector of JDK 16+
+     */
+    String VECTOR_KERNEL = "VectorKernel";
+
+    /**
+     * SIMD kernel, null if it is not available (class not compiled, module not resolved or disabled with the system
+     * property kmeans.simd=false), in which case the scalar assignment is used
+     */
+    AssignmentKernel SIMD = load();
+
+    /**
+     * Assigns every point of a block to the nearest centroid
+     * @param columns coordinates of the points: columns[j][i] is the j-th coordinate of the i-th point
+     * @param from first index of the block (inclusive)
+     * @param to last index of the block (exclusive)
+     * @param centroids centroids, flattened: the j-th coordinate of the c-th centroid is at c*dimension + j
+     * @param k number of centroids
+     * @param labels clusterization, where the index of the nearest centroid of every point of the block is written
+     */
+    void assign(float[][] columns, int from, int to, float[] centroids, int k, int[] labels);
+
+    /**
+     * Loads the SIMD kernel, and checks that it can really run on this JVM
+     * @return kernel, null if it is not available
+     */
+    private static AssignmentKernel load() {
+        if ("false".equals(System.getProperty("kmeans.simd"))) {
+            return null;
+        }
+        try {
+            AssignmentKernel kernel = (AssignmentKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+            kernel.assign(new float[][]{new float[64]}, 0, 64, new float[]{0, 1}, 2, new int[64]);
+                // the classes of the module are resolved only at the first use
+            return kernel;
+        } catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+            return null;
+        }
+    }
+}
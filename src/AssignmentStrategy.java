@@ -0,0 +1,25 @@
+/**
+ * Strategies to assign the points to the nearest centroid at every iteration of k-means.
+ * All the strategies produce the same clusterization
+ */
+public enum AssignmentStrategy {
+    /**
+     * Computes the distance of every point from every centroid
+     */
+    BRUTE_FORCE,
+
+    /**
+     * Keeps for every point a lower bound of the distance from all the centroids except its own (Hamerly, 2010), and
+     * computes the distances from all the centroids only for the points whose bounds don't exclude a change of
+     * cluster (the distance from their own centroid is always computed). It needs a float for every point
+     */
+    HAMERLY,
+
+    /**
+     * Filters the candidate centroids of the boxes of a kd-tree of the points (Kanungo et al., 2002): the points of a
+     * box with a single candidate are assigned without computing any distance, the others compute the distances only
+     * from the remaining candidates. The tree is built once per clusterization and needs d+1 values for every point;
+     * it suits many points of low dimension, as the colours of an image
+     */
+    KD_TREE
+}
@@ -0,0 +1,387 @@
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Quantizes a batch of images to k colours with a pipeline of four stages: decode, conversion to dataset,
+ * clusterization and PNG encode (palette-indexed up to 256 colours). Every stage has its own threads and the stages are
+ * connected by bounded queues, so the disk and the CPU work on different images at the same time (e.g. an image is
+ * decoded while the previous one is clusterized and the one before is encoded).
+ * The pipeline is limited by a memory budget: before an image is decoded, its size is read from the header of the
+ * file and the memory of all its buffers (estimated in {@link #BYTES_PER_PIXEL} bytes per pixel) is reserved until it
+ * is encoded, so the images waiting in the queues never exceed the budget. An image larger than the whole budget is
+ * processed alone.
+ * The clusterizations of the images run concurrently on the same KMeans, so it must not be reconfigured during a batch
+ */
+public final class BatchQuantizer {
+    /**
+     * Estimate of the bytes of the buffers of a pixel during its quantization: decoded image (up to 4), dataset (3),
+     * labels (4), bounds of the Hamerly assignment (4) or kd-tree (16) and encoded image (3)
+     */
+    public static final int BYTES_PER_PIXEL = 32;
+
+    /**
+     * Job that signals to a worker that its stage is finished
+     */
+    private static final Job END = new Job(null, null, 0);
+
+    private final KMeans<?> kmeans;
+    private final int k;
+    private int decodeThreads = 2;
+    private int convertThreads = 1;
+    private int clusterThreads = 1;
+    private int encodeThreads = 2;
+    private int queueCapacity = 2;
+    private long memoryBudget = Runtime.getRuntime().maxMemory() / 2;
+
+    /**
+     * Constructor
+     * @param kmeans k-means with which the images are clusterized (its pool parallelizes every clusterization)
+     * @param k number of colours
+     * @throws NullPointerException if kmeans is null
+     * @throws IllegalArgumentException if k is < 1
+     */
+    public BatchQuantizer(final KMeans<?> kmeans, int k) throws NullPointerException, IllegalArgumentException {
+        if (kmeans == null) {
+            throw new NullPointerException("KMeans can't be null");
+        }
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+        this.kmeans = kmeans;
+        this.k = k;
+    }
+
+    /**
+     * Sets the number of threads of every stage. A JPEG decode or a PNG encode runs on a single thread, while a
+     * clusterization already runs on the pool of the KMeans, so the defaults are 2, 1, 1, 2
+     * @param decode threads that decode the images
+     * @param convert threads that convert the images to datasets
+     * @param cluster threads that clusterize the datasets
+     * @param encode threads that encode the quantized images
+     * @throws IllegalArgumentException if a number is < 1
+     */
+    public void setThreads(int decode, int convert, int cluster, int encode) throws IllegalArgumentException {
+        if (decode < 1 || convert < 1 || cluster < 1 || encode < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive");
+        }
+        this.decodeThreads = decode;
+        this.convertThreads = convert;
+        this.clusterThreads = cluster;
+        this.encodeThreads = encode;
+    }
+
+    /**
+     * Sets the capacity of the queues between the stages (default 2)
+     * @param queueCapacity number of images that can wait before every stage
+     * @throws IllegalArgumentException if the capacity is < 1
+     */
+    public void setQueueCapacity(int queueCapacity) throws IllegalArgumentException {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be positive");
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Sets the memory that the images of the pipeline can use (default half of the maximum heap)
+     * @param memoryBudget budget, in bytes
+     * @throws IllegalArgumentException if the budget is < 1 MB
+     */
+    public void setMemoryBudget(long memoryBudget) throws IllegalArgumentException {
+        if (memoryBudget < (1 << 20)) {
+            throw new IllegalArgumentException("Memory budget must be at least 1 MB");
+        }
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Quantizes the images and saves them as PNG. An image that can't be quantized doesn't stop the others
+     * @param inputPaths paths of the images in the filesystem
+     * @param outputPaths paths of the quantized images in the filesystem, in the same order
+     * @return error of every image that has not been quantized, by input path, in the order of failure (also an
+     *         Error, e.g. an OutOfMemoryError for an image too big for the heap)
+     * @throws InterruptedException if the thread is interrupted (the images in the pipeline are abandoned)
+     * @throws NullPointerException if a list or a path is null
+     * @throws IllegalArgumentException if the lists have different sizes
+     */
+    public Map<String, Throwable> process(final List<String> inputPaths, final List<String> outputPaths)
+            throws InterruptedException, NullPointerException, IllegalArgumentException {
+        if (inputPaths == null || outputPaths == null) {
+            throw new NullPointerException("Paths can't be null");
+        }
+        if (inputPaths.size() != outputPaths.size()) {
+            throw new IllegalArgumentException("Input and output paths must have the same size");
+        }
+        for (int i = 0; i < inputPaths.size(); i++) {
+            if (inputPaths.get(i) == null || outputPaths.get(i) == null) {
+                throw new NullPointerException("Paths can't be null");
+            }
+        }
+
+        int totalPermits = (int) Math.min(memoryBudget >> 10, Integer.MAX_VALUE);   // 1 permit = 1 KB
+        Semaphore memory = new Semaphore(totalPermits);
+        Map<String, Throwable> failures = Collections.synchronizedMap(new LinkedHashMap<>());
+
+        BlockingQueue<Job> decodeQueue = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Job> convertQueue = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Job> clusterQueue = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Job> encodeQueue = new ArrayBlockingQueue<>(queueCapacity);
+
+        Stage encode = new Stage("encode", encodeThreads, encodeQueue, null, memory, failures) {
+            @Override
+            void process(Job job) throws IOException {
+                if (k <= 256) {
+                    Image.exportIndexed(job.clustering, job.outputPath, job.width, job.height);
+                } else {
+                    Image.export(job.clustering, job.outputPath, job.width, job.height);
+                }
+                job.clustering = null;
+            }
+        };
+        Stage cluster = new Stage("cluster", clusterThreads, clusterQueue, encode, memory, failures) {
+            @Override
+            void process(Job job) {
+                job.clustering = kmeans.clusterize(k, job.data);
+                job.data = null;
+            }
+        };
+        Stage convert = new Stage("convert", convertThreads, convertQueue, cluster, memory, failures) {
+            @Override
+            void process(Job job) {
+                job.data = Image.toRGBDataset(job.image);
+                job.image = null;
+            }
+        };
+        Stage decode = new Stage("decode", decodeThreads, decodeQueue, convert, memory, failures) {
+            @Override
+            void process(Job job) throws IOException {
+                BufferedImage image = Image.load(job.inputPath);
+                if (image == null) {
+                    throw new IOException("Unsupported image format");
+                }
+                if (image.getWidth() != job.width || image.getHeight() != job.height) {
+                    throw new IOException("Image size doesn't match its header");
+                }
+                job.image = image;
+            }
+        };
+        Stage[] stages = {decode, convert, cluster, encode};
+
+        try {
+            for (Stage stage : stages) {
+                stage.start();
+            }
+            for (int i = 0; i < inputPaths.size(); i++) {
+                Job job;
+                try {
+                    int[] size = readSize(inputPaths.get(i));
+                    long kilobytes = (((long) size[0] * size[1] * BYTES_PER_PIXEL) >> 10) + 1;
+                    job = new Job(inputPaths.get(i), outputPaths.get(i), (int) Math.min(kilobytes, totalPermits));
+                    job.width = size[0];
+                    job.height = size[1];
+                } catch (IOException e) {
+                    failures.put(inputPaths.get(i), e);
+                    continue;
+                }
+                memory.acquire(job.permits);
+                    // back-pressure: waits until the images in the pipeline release enough memory
+                decodeQueue.put(job);
+            }
+            decode.finish();
+            encode.await();
+        } catch (InterruptedException e) {
+            for (Stage stage : stages) {
+                stage.abort();
+            }
+            throw e;
+        }
+        return failures;
+    }
+
+    /**
+     * Reads the size of an image from the header of its file, without decoding it
+     * @param path path of the image in the filesystem
+     * @return width and height
+     * @throws IOException if an error occurs reading the file, or the format of the image is not supported
+     */
+    private static int[] readSize(String path) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new File(path))) {
+            if (input == null) {
+                throw new IOException("Can't read " + path);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return new int[]{reader.getWidth(0), reader.getHeight(0)};
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Represents an image that flows through the pipeline: every stage drops the buffers it has consumed
+     */
+    private static final class Job {
+        final String inputPath, outputPath;
+
+        /**
+         * Permits of the memory budget reserved by the image
+         */
+        final int permits;
+
+        int width, height;
+        BufferedImage image;
+        RGBDataset data;
+        Clustering clustering;
+
+        Job(String inputPath, String outputPath, int permits) {
+            this.inputPath = inputPath;
+            this.outputPath = outputPath;
+            this.permits = permits;
+        }
+    }
+
+    /**
+     * Represents a stage of the pipeline: its workers take the jobs from its queue, process them and put them in the
+     * queue of the next stage (blocking while it is full). When all the workers have received the end signal, the
+     * stage sends it to the workers of the next stage
+     */
+    private abstract static class Stage {
+        private final String name;
+        private final int threads;
+        private final BlockingQueue<Job> queue;
+        private final Stage next;
+        private final Semaphore memory;
+        private final Map<String, Throwable> failures;
+        private final AtomicInteger running;
+        private ExecutorService executor;
+
+        /**
+         * Constructor
+         * @param name name of the stage, used for the names of the threads
+         * @param threads number of workers
+         * @param queue queue of the jobs of the stage
+         * @param next next stage, null for the last one (that releases the memory of the jobs)
+         * @param memory memory budget
+         * @param failures errors of the failed jobs
+         */
+        Stage(String name, int threads, BlockingQueue<Job> queue, Stage next, Semaphore memory,
+              Map<String, Throwable> failures) {
+            this.name = name;
+            this.threads = threads;
+            this.queue = queue;
+            this.next = next;
+            this.memory = memory;
+            this.failures = failures;
+            this.running = new AtomicInteger(threads);
+        }
+
+        /**
+         * Processes a job, replacing its input buffer with the output one
+         * @param job job
+         * @throws Exception if the job fails
+         */
+        abstract void process(Job job) throws Exception;
+
+        /**
+         * Starts the workers
+         */
+        void start() {
+            AtomicInteger count = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "batch-" + name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            for (int t = 0; t < threads; t++) {
+                executor.execute(this::work);
+            }
+            executor.shutdown();
+        }
+
+        /**
+         * Sends the end signal to all the workers, after the jobs already in the queue
+         * @throws InterruptedException if the thread is interrupted while the queue is full
+         */
+        void finish() throws InterruptedException {
+            for (int t = 0; t < threads; t++) {
+                queue.put(END);
+            }
+        }
+
+        /**
+         * Waits until all the workers have finished
+         * @throws InterruptedException if the thread is interrupted
+         */
+        void await() throws InterruptedException {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Interrupts the workers, abandoning their jobs
+         */
+        void abort() {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        /**
+         * Loop of a worker
+         */
+        private void work() {
+            try {
+                for (Job job = queue.take(); job != END; job = queue.take()) {
+                    boolean done = false;
+                    try {
+                        process(job);
+                        done = true;
+                    } catch (Throwable e) {
+                        job.image = null;           // releases the buffers of the job before anything else
+                        job.data = null;
+                        job.clustering = null;
+                        failures.put(job.inputPath, e);
+                    } finally {
+                        if (!done || next == null) {
+                            memory.release(job.permits);
+                        }
+                    }
+                    if (done && next != null) {
+                        next.queue.put(job);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();     // the pipeline has been aborted
+            } finally {
+                if (running.decrementAndGet() == 0 && next != null) {
+                    try {
+                        next.finish();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -1,4 +1,5 @@
 import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Represents a cluster of points
@@ -17,9 +18,10 @@ public class Cluster<T extends Point> extends SetOfPoints<T> {
      * Constructor
      * @param domain domain to which the points belong
      * @param points points to collect
-     * @throws NullPointerException if the domain is null
+     * @throws NullPointerException if the domain or a point is null
+     * @throws IllegalArgumentException if a point doesn't belong to the domain
      */
-    public Cluster(Domain domain, Collection<T> points) throws NullPointerException {
+    public Cluster(Domain domain, Collection<T> points) throws NullPointerException, IllegalArgumentException {
         super(domain, points);
     }
 
@@ -33,41 +35,74 @@ public class Cluster<T extends Point> extends SetOfPoints<T> {
     }
 
     /**
-     * Get the centroid of the cluster
+     * Get the centroid of the cluster. It costs O(dimension), as the mean is kept up to date at every change
      * @return centroid
      */
     public Point getCenter() {
-        int dimension = getDomain().getDimension();
-        float[] coordinates = new float[dimension];
-
-        for (T p : this.points) {
-            for (int i = 0; i < dimension; i++) {
-                coordinates[i] += p.getCoordinate(i + 1)/this.points.size();;
-                    // cannot throws exception because we know the dimension and we respect it
-            }
+        float[] coordinates = new float[getDomain().getDimension()];
+        for (int j = 0; j < coordinates.length; j++) {
+            coordinates[j] = (float) getMean(j);
         }
 
         return new Point(coordinates);
     }
 
     /**
-     * Get the diameter of the cluster
+     * Get the inertia (SSE) of the cluster, i.e. the sum of the squared euclidean distances of the points from the
+     * centroid. It costs O(1), as it is kept up to date at every change
+     * @return inertia
+     */
+    public double getInertia() {
+        return getSquaredDeviations();
+    }
+
+    /**
+     * Get the variance of the cluster, i.e. the mean squared euclidean distance of the points from the centroid
+     * @return variance, 0 if the cluster is empty
+     */
+    public double getVariance() {
+        return (size() == 0) ? 0 : getSquaredDeviations() / size();
+    }
+
+    /**
+     * Move a point to another cluster in O(dimension): the last point of this cluster takes its place
+     * @param index index of the point (0-indexed)
+     * @param destination cluster to which the point is moved
+     * @return moved point
+     * @throws IndexOutOfBoundsException if the index is <0 or >=size
+     * @throws NullPointerException if the destination is null
+     * @throws IllegalArgumentException if the point doesn't belong to the domain of the destination
+     */
+    public T move(int index, Cluster<T> destination) throws IndexOutOfBoundsException, NullPointerException, IllegalArgumentException {
+        if (destination == null) {
+            throw new NullPointerException("Destination can't be null");
+        }
+        destination.add(get(index));    // first, so that if it throws exception the point is not removed
+        return remove(index);
+    }
+
+    /**
+     * Minimum number of points of a cluster whose diameter is computed in parallel by {@link #getDiameter()}
+     */
+    public static final int PARALLEL_DIAMETER_THRESHOLD = 1 << 16;
+
+    /**
+     * Get the diameter of the cluster, i.e. the maximum distance between two of its points. The large clusters are
+     * processed in parallel on the common pool
      * @return diameter
      */
     public float getDiameter() {
-        float max = 0;
-        int n = this.points.size();
-        for (int i = 0; i < n; i++) {
-            Point p1 = this.points.get(i);
-            for (int j = i+1; j < n; j++) {
-                Point p2 = this.points.get(j);
-                float distance = Point.getEuclideanDistance(p1, p2);
-                    // cannot throws exception because points from a SetOfPoint is secure that have same dimension
-                if (distance > max) {
-                    max = distance;
-                }
-            }
-        }
-        return max;
+        return getDiameter((size() < PARALLEL_DIAMETER_THRESHOLD) ? null : ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Get the diameter of the cluster, i.e. the maximum distance between two of its points.
+     * Only the pairs of the outermost points are compared, so it takes far less than comparing all the pairs, but the
+     * result is the same
+     * @param pool pool on which the points are processed, null for the sequential execution
+     * @return diameter
+     */
+    public float getDiameter(ForkJoinPool pool) {
+        return Diameter.of(new ColumnarDataset(this).getColumns(), pool);
     }
 }
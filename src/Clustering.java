@@ -0,0 +1,112 @@
+import net.jcip.annotations.Immutable;
+
+import java.util.Arrays;
+
+/**
+ * Represents the result of a clusterization of a dataset: the centroids of the clusters and, for every point of the
+ * dataset, the index of the cluster to which it is assigned
+ */
+@Immutable
+public final class Clustering {
+    /**
+     * Centroids of the clusters
+     */
+    private final float[][] centroids;
+
+    /**
+     * Index of the cluster of every point
+     */
+    private final int[] labels;
+
+    /**
+     * Sum of the (weighted) squared distances of the points from the centroid of their cluster
+     */
+    private final double inertia;
+
+    /**
+     * Constructor. The arrays are not copied, because the clusterization produces them only for this object
+     * @param centroids centroids of the clusters
+     * @param labels index of the cluster of every point
+     * @param inertia sum of the squared distances of the points from the centroid of their cluster
+     */
+    Clustering(final float[][] centroids, final int[] labels, double inertia) {
+        this.centroids = centroids;
+        this.labels = labels;
+        this.inertia = inertia;
+    }
+
+    /**
+     * @return number of clusters
+     */
+    public int getK() {
+        return centroids.length;
+    }
+
+    /**
+     * @return number of clusterized points
+     */
+    public int size() {
+        return labels.length;
+    }
+
+    /**
+     * Get the centroid of a cluster
+     * @param cluster index of the cluster (0-indexed)
+     * @return centroid
+     * @throws IndexOutOfBoundsException if the cluster is <0 or >=k
+     */
+    public Point getCentroid(int cluster) throws IndexOutOfBoundsException {
+        return new Point(centroids[cluster]);
+    }
+
+    /**
+     * Get the cluster of a point
+     * @param index index of the point in the dataset (0-indexed)
+     * @return index of the cluster
+     * @throws IndexOutOfBoundsException if the index is <0 or >=size
+     */
+    public int getLabel(int index) throws IndexOutOfBoundsException {
+        return labels[index];
+    }
+
+    /**
+     * @return cluster of every point
+     */
+    public int[] getLabels() {
+        return Arrays.copyOf(labels, labels.length);
+    }
+
+    /**
+     * @return cluster of every point, without copying them (they must not be modified)
+     */
+    int[] getLabelArray() {
+        return labels;
+    }
+
+    /**
+     * Get the inertia (or SSE) of the clusterization, the sum of the squared distances of the points from the centroid
+     * of their cluster, each multiplied by the weight of the point
+     * @return inertia
+     */
+    public double getInertia() {
+        return inertia;
+    }
+
+    /**
+     * Get the relative gap of the inertia from the inertia of another clusterization of the same points, e.g. the
+     * gap of an approximated clusterization from the full one
+     * @param reference clusterization to compare with
+     * @return (inertia - reference inertia) / reference inertia
+     * @throws NullPointerException if the reference is null
+     * @throws IllegalArgumentException if the reference clusterizes a different number of points
+     */
+    public double getInertiaGap(final Clustering reference) throws NullPointerException, IllegalArgumentException {
+        if (reference == null) {
+            throw new NullPointerException("Reference can't be null");
+        }
+        if (reference.size() != size()) {
+            throw new IllegalArgumentException("Clusterizations of different points");
+        }
+        return (inertia - reference.inertia) / reference.inertia;
+    }
+}
@@ -0,0 +1,30 @@
+import jdk.jfr.*;
+
+/**
+ * JFR event of the iterations of a k-means clusterization (of a run of a multi-start clusterization), with the time of
+ * the seeding that precedes them. It is recorded only when enabled in the recording
+ */
+@Name("kmeans.Clusterization")
+@Label("K-Means Clusterization")
+@Category("K-Means")
+@Description("Iterations of a k-means clusterization")
+final class ClusterizationEvent extends Event {
+    @Label("k")
+    int k;
+
+    @Label("Points")
+    int points;
+
+    @Label("Run")
+    int run;
+
+    @Label("Iterations")
+    int iterations;
+
+    @Label("Stop Reason")
+    String stopReason;
+
+    @Label("Seeding Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long seedingTime;
+}
@@ -0,0 +1,250 @@
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Weighted dataset of the distinct colours of an image: every colour is a point whose weight is the number of pixels
+ * of that colour. Optionally the colours are first quantized on a grid with fewer bits per channel, and every cell of
+ * the grid becomes a point in the mean colour of its pixels.
+ * Natural images have far fewer distinct colours than pixels, so clustering the histogram is much cheaper than
+ * clustering the pixels; the clusterization of the colours is brought back to the pixels only at the end, by
+ * {@link #toPixelClustering(Clustering, BufferedImage)}
+ */
+public final class ColorHistogram implements Dataset {
+    /**
+     * Bits per channel of the grid (8 for the exact colours)
+     */
+    private final int bits;
+
+    /**
+     * Mean colour of every entry: columns[j][i] is the j-th channel of the i-th entry
+     */
+    private final float[][] columns;
+
+    /**
+     * Number of pixels of every entry
+     */
+    private final double[] weights;
+
+    /**
+     * Open addressing hash table from the quantized colour to the index of its entry: keys (-1 for the empty slots)
+     * and indexes of the entries
+     */
+    private final int[] tableKeys, tableEntries;
+
+    /**
+     * Constructor
+     * @param bits bits per channel of the grid
+     * @param columns mean colour of every entry
+     * @param weights number of pixels of every entry
+     * @param tableKeys keys of the hash table
+     * @param tableEntries entries of the hash table
+     */
+    private ColorHistogram(int bits, final float[][] columns, final double[] weights, final int[] tableKeys, final int[] tableEntries) {
+        this.bits = bits;
+        this.columns = columns;
+        this.weights = weights;
+        this.tableKeys = tableKeys;
+        this.tableEntries = tableEntries;
+    }
+
+    /**
+     * Builds the histogram of the exact colours of an image
+     * @param img image
+     * @return histogram
+     * @throws NullPointerException if the image is null
+     */
+    public static ColorHistogram of(BufferedImage img) throws NullPointerException {
+        return of(img, 8);
+    }
+
+    /**
+     * Builds the histogram of the colours of an image quantized on a grid
+     * @param img image
+     * @param bits bits per channel of the grid, in [1, 8] (8 for the exact colours)
+     * @return histogram
+     * @throws NullPointerException if the image is null
+     * @throws IllegalArgumentException if bits is not in [1, 8]
+     */
+    public static ColorHistogram of(BufferedImage img, int bits) throws NullPointerException, IllegalArgumentException {
+        if (img == null) {
+            throw new NullPointerException("Image can't be null");
+        }
+        if (bits < 1 || bits > 8) {
+            throw new IllegalArgumentException("Bits per channel must be in [1, 8]");
+        }
+
+        int capacity = 1 << 12;
+        int[] tableKeys = new int[capacity];
+        int[] tableEntries = new int[capacity];
+        Arrays.fill(tableKeys, -1);
+        long[] sums = new long[3 * capacity / 2];
+        long[] counts = new long[capacity / 2];
+        int entries = 0;
+
+        int width = img.getWidth();
+        int[] row = new int[width];
+        for (int y = 0; y < img.getHeight(); y++) {
+            Image.readRow(img, y, row, 0);
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x] & 0xFFFFFF;
+                int key = key(rgb, bits);
+                int slot = find(tableKeys, key);
+                int entry;
+                if (tableKeys[slot] == key) {
+                    entry = tableEntries[slot];
+                } else {
+                    entry = entries++;
+                    tableKeys[slot] = key;
+                    tableEntries[slot] = entry;
+                    if (entries == counts.length) {
+                        counts = Arrays.copyOf(counts, 2 * entries);
+                        sums = Arrays.copyOf(sums, 6 * entries);
+                        int[][] table = rehash(tableKeys, tableEntries, 2 * tableKeys.length);
+                        tableKeys = table[0];
+                        tableEntries = table[1];
+                    }
+                }
+                sums[3 * entry] += (rgb >> 16) & 0xFF;
+                sums[3 * entry + 1] += (rgb >> 8) & 0xFF;
+                sums[3 * entry + 2] += rgb & 0xFF;
+                counts[entry]++;
+            }
+        }
+
+        float[][] columns = new float[3][entries];
+        double[] weights = new double[entries];
+        for (int i = 0; i < entries; i++) {
+            for (int j = 0; j < 3; j++) {
+                columns[j][i] = (float) sums[3 * i + j] / counts[i];
+            }
+            weights[i] = counts[i];
+        }
+        return new ColorHistogram(bits, columns, weights, tableKeys, tableEntries);
+    }
+
+    @Override
+    public Domain getDomain() {
+        return Domain.RGB();
+    }
+
+    @Override
+    public int size() {
+        return weights.length;
+    }
+
+    @Override
+    public float getValue(int index, int dimension) {
+        return columns[dimension][index];
+    }
+
+    @Override
+    public double getWeight(int index) {
+        return weights[index];
+    }
+
+    /**
+     * Gets the entry of a colour
+     * @param rgb colour, as 0xRRGGBB (the higher bits are ignored)
+     * @return index of the entry of the colour, -1 if no pixel of the image has it
+     */
+    public int getEntry(int rgb) {
+        int slot = find(tableKeys, key(rgb & 0xFFFFFF, bits));
+        return (tableKeys[slot] < 0) ? -1 : tableEntries[slot];
+    }
+
+    /**
+     * Brings a clusterization of this histogram back to the pixels of its image
+     * @param clustering clusterization of this histogram
+     * @param img image from which this histogram was built
+     * @return clusterization of the pixels, stored row by row as in {@link Image#toDataset(BufferedImage)}
+     * @throws NullPointerException if the clustering or the image are null
+     * @throws IllegalArgumentException if the clustering is not of this histogram or the image has colours that are
+     * not in this histogram
+     */
+    public Clustering toPixelClustering(final Clustering clustering, final BufferedImage img) throws NullPointerException, IllegalArgumentException {
+        if (clustering == null || img == null) {
+            throw new NullPointerException("Clustering and image can't be null");
+        }
+        if (clustering.size() != size()) {
+            throw new IllegalArgumentException("Clustering is not of this histogram");
+        }
+
+        int k = clustering.getK();
+        float[][] centroids = new float[k][];
+        for (int c = 0; c < k; c++) {
+            centroids[c] = clustering.getCentroid(c).getCoordinates();
+        }
+
+        int width = img.getWidth();
+        int[] labels = new int[width * img.getHeight()];
+        int[] row = new int[width];
+        double inertia = 0;
+        for (int y = 0; y < img.getHeight(); y++) {
+            Image.readRow(img, y, row, 0);
+            for (int x = 0; x < width; x++) {
+                int entry = getEntry(row[x]);
+                if (entry < 0) {
+                    throw new IllegalArgumentException("Image has colours that are not in this histogram");
+                }
+                int label = clustering.getLabel(entry);
+                labels[y * width + x] = label;
+
+                float dr = ((row[x] >> 16) & 0xFF) - centroids[label][0];
+                float dg = ((row[x] >> 8) & 0xFF) - centroids[label][1];
+                float db = (row[x] & 0xFF) - centroids[label][2];
+                inertia += dr*dr + dg*dg + db*db;
+            }
+        }
+        return new Clustering(centroids, labels, inertia);
+    }
+
+    /**
+     * Quantizes a colour on the grid
+     * @param rgb colour, as 0xRRGGBB
+     * @param bits bits per channel of the grid
+     * @return cell of the grid
+     */
+    private static int key(int rgb, int bits) {
+        int shift = 8 - bits;
+        int r = ((rgb >> 16) & 0xFF) >> shift;
+        int g = ((rgb >> 8) & 0xFF) >> shift;
+        int b = (rgb & 0xFF) >> shift;
+        return (r << (2 * bits)) | (g << bits) | b;
+    }
+
+    /**
+     * Finds the slot of a key in the hash table, with linear probing
+     * @param tableKeys keys of the hash table (with at least an empty slot)
+     * @param key key
+     * @return slot of the key, or the empty slot where it would be inserted
+     */
+    private static int find(final int[] tableKeys, int key) {
+        int mask = tableKeys.length - 1;
+        int slot = (key * 0x9E3779B9) >>> 7 & mask;
+        while (tableKeys[slot] != key && tableKeys[slot] >= 0) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Moves the hash table to a larger one
+     * @param tableKeys keys of the hash table
+     * @param tableEntries entries of the hash table
+     * @param capacity capacity of the new table (power of 2)
+     * @return keys and entries of the new table
+     */
+    private static int[][] rehash(final int[] tableKeys, final int[] tableEntries, int capacity) {
+        int[] keys = new int[capacity];
+        int[] entries = new int[capacity];
+        Arrays.fill(keys, -1);
+        for (int slot = 0; slot < tableKeys.length; slot++) {
+            if (tableKeys[slot] >= 0) {
+                int newSlot = find(keys, tableKeys[slot]);
+                keys[newSlot] = tableKeys[slot];
+                entries[newSlot] = tableEntries[slot];
+            }
+        }
+        return new int[][]{keys, entries};
+    }
+}
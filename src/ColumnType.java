@@ -0,0 +1,22 @@
+/**
+ * Type of the values of the columns of a point file (see {@link PointFileWriter})
+ */
+public enum ColumnType {
+    /**
+     * 32-bit floating-point values: any coordinate
+     */
+    FLOAT32(4),
+    /**
+     * Unsigned 8-bit integer values: integer coordinates in [0, 255], e.g. colours, in a quarter of the space
+     */
+    UINT8(1);
+
+    /**
+     * Size in bytes of a value
+     */
+    final int bytes;
+
+    ColumnType(int bytes) {
+        this.bytes = bytes;
+    }
+}
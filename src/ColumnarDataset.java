@@ -0,0 +1,129 @@
+/**
+ * Dataset that stores the points column by column: a primitive array for each dimension of the domain.
+ * Compared to a SetOfPoints it doesn't need an object for each point, so it takes a fraction of the heap and the
+ * coordinates read by the distance loops are contiguous in memory
+ */
+public final class ColumnarDataset implements Dataset {
+    /**
+     * Common domain of the points
+     */
+    private final Domain domain;
+
+    /**
+     * Lower-bounds of the domain, cached to check the values without copying them at every set
+     */
+    private final float[] lowerBounds;
+
+    /**
+     * Upper-bounds of the domain, cached to check the values without copying them at every set
+     */
+    private final float[] upperBounds;
+
+    /**
+     * Coordinates of the points: columns[j][i] is the j-th coordinate (0-indexed) of the i-th point
+     */
+    private final float[][] columns;
+
+    /**
+     * Dataset that gives the weights of the points, null if they are not weighted
+     */
+    private final Dataset weights;
+
+    /**
+     * Constructor. All the coordinates are initialized to 0
+     * @param domain domain to which the points belong
+     * @param size number of points
+     * @throws NullPointerException if the domain is null
+     * @throws IllegalArgumentException if size is < 0
+     */
+    public ColumnarDataset(final Domain domain, int size) throws NullPointerException, IllegalArgumentException {
+        this(domain, size, null);
+    }
+
+    /**
+     * Constructor of a dataset whose points have the weights of the points of another dataset, e.g. its transformation
+     * in another space. All the coordinates are initialized to 0
+     * @param domain domain to which the points belong
+     * @param size number of points
+     * @param weights dataset that gives the weights of the points (of at least size points), null if they are not weighted
+     * @throws NullPointerException if the domain is null
+     * @throws IllegalArgumentException if size is < 0
+     */
+    ColumnarDataset(final Domain domain, int size, final Dataset weights) throws NullPointerException, IllegalArgumentException {
+        if (domain == null) {
+            throw new NullPointerException("Domain can't be null");
+        }
+        if (size < 0) {
+            throw new IllegalArgumentException("Size must be non-negative");
+        }
+        this.domain = domain;
+        this.lowerBounds = domain.getLowerBounds();
+        this.upperBounds = domain.getUpperBounds();
+        this.columns = new float[domain.getDimension()][size];
+        this.weights = weights;
+    }
+
+    /**
+     * Constructor from a set of points, whose points are copied in the same order
+     * @param sop Set Of Points to copy
+     * @throws NullPointerException if the set of point is null
+     */
+    public ColumnarDataset(final SetOfPoints<? extends Point> sop) throws NullPointerException {
+        this(sop.getDomain(), sop.size());
+
+        int i = 0;
+        for (Point p : sop.points) {
+            for (int j = 0; j < columns.length; j++) {
+                columns[j][i] = p.getCoordinate(j + 1);
+                    // cannot throws exception because SetOfPoint ensure that all the points respect the dimension of the domain
+            }
+            i++;
+        }
+    }
+
+    @Override
+    public Domain getDomain() {
+        return domain;
+    }
+
+    @Override
+    public int size() {
+        return (columns.length == 0) ? 0 : columns[0].length;
+    }
+
+    @Override
+    public float getValue(int index, int dimension) {
+        return columns[dimension][index];
+    }
+
+    @Override
+    public double getWeight(int index) {
+        return (weights == null) ? 1 : weights.getWeight(index);
+    }
+
+    /**
+     * Sets a coordinate of a point
+     * @param index index of the point (0-indexed)
+     * @param dimension coordinate to set (0-indexed)
+     * @param value value of the coordinate
+     * @throws IndexOutOfBoundsException if the index or the dimension are invalid
+     * @throws IllegalArgumentException if the value doesn't belong to the domain
+     */
+    public void setValue(int index, int dimension, float value) throws IndexOutOfBoundsException, IllegalArgumentException {
+        if (dimension < 0 || dimension >= columns.length || index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Invalid index or dimension");
+        }
+        if (value < lowerBounds[dimension] || value > upperBounds[dimension]) {
+            throw new IllegalArgumentException("Incompatible value");
+        }
+        columns[dimension][index] = value;
+    }
+
+    /**
+     * Gets the columns of the coordinates, without copying them, for the kernels that read them directly
+     * @return columns: columns[j][i] is the j-th coordinate of the i-th point
+     */
+    float[][] getColumns() {
+        return columns;
+    }
+}
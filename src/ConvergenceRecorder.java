@@ -0,0 +1,105 @@
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Listener that records the statistics of the iterations and the totals of the clusterizations, e.g. to inspect the
+ * convergence after a clusterization or to compare the stop policies. Every getter returns a snapshot of the
+ * statistics recorded so far
+ */
+@ThreadSafe
+public final class ConvergenceRecorder implements IterationListener {
+    @GuardedBy("this")
+    private final List<IterationStats> iterations = new ArrayList<>();
+
+    @GuardedBy("this")
+    private int clusterizations = 0;
+
+    @GuardedBy("this")
+    private long seedingTime = 0;
+
+    @GuardedBy("this")
+    private StopReason lastStopReason = null;
+
+    @Override
+    public synchronized void iterationCompleted(final IterationStats stats) {
+        iterations.add(stats);
+    }
+
+    @Override
+    public synchronized void clusterizationCompleted(int k, int run, int iterations, StopReason reason, long seedingTime) {
+        this.clusterizations++;
+        this.seedingTime += seedingTime;
+        this.lastStopReason = reason;
+    }
+
+    /**
+     * @return statistics of all the recorded iterations, in the order of completion
+     */
+    public synchronized List<IterationStats> getIterations() {
+        return Collections.unmodifiableList(new ArrayList<>(iterations));
+    }
+
+    /**
+     * @return number of recorded iterations
+     */
+    public synchronized int getIterationCount() {
+        return iterations.size();
+    }
+
+    /**
+     * @return number of completed clusterizations (every run of a multi-start clusterization counts as one)
+     */
+    public synchronized int getClusterizationCount() {
+        return clusterizations;
+    }
+
+    /**
+     * @return reason of the stop of the last completed clusterization, null if none is completed
+     */
+    public synchronized StopReason getLastStopReason() {
+        return lastStopReason;
+    }
+
+    /**
+     * @return total time of the seeding, in nanoseconds
+     */
+    public synchronized long getSeedingTime() {
+        return seedingTime;
+    }
+
+    /**
+     * @return total time of the assignments, in nanoseconds
+     */
+    public synchronized long getAssignmentTime() {
+        long time = 0;
+        for (IterationStats stats : iterations) {
+            time += stats.getAssignmentTime();
+        }
+        return time;
+    }
+
+    /**
+     * @return total time of the updates of the centroids, in nanoseconds
+     */
+    public synchronized long getUpdateTime() {
+        long time = 0;
+        for (IterationStats stats : iterations) {
+            time += stats.getUpdateTime();
+        }
+        return time;
+    }
+
+    /**
+     * Forgets all the recorded statistics
+     */
+    public synchronized void clear() {
+        iterations.clear();
+        clusterizations = 0;
+        seedingTime = 0;
+        lastStopReason = null;
+    }
+}
@@ -0,0 +1,175 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Weighted summary of a (large) set of points: a small set of weighted points on which the cost of any choice of
+ * centroids approximates the cost on the original points, so that KMeans can clusterize it instead of them and
+ * {@link KMeans#assign(Clustering, Dataset)} can bring the centroids back to the points.
+ * It is a lightweight coreset (Bachem, Lucic, Krause, 2018): the points are sampled with probability half uniform and
+ * half proportional to their squared distance from the mean, and weighted by the inverse of their probability. With
+ * O((d*k*log k + log 1/delta)/epsilon^2) points, with probability 1-delta the cost of every set of k centroids on the
+ * coreset differs from the cost on the original points by at most epsilon times the sum of that cost and of the cost
+ * of the points around their mean. Large sets are summarized by merge and reduce ({@link CoresetBuilder}), whose error
+ * grows with the (logarithmic) number of levels
+ */
+public final class Coreset implements Dataset {
+    private final Domain domain;
+
+    /**
+     * Coordinates of the points: columns[j][i] is the j-th coordinate of the i-th point
+     */
+    private final float[][] columns;
+
+    /**
+     * Weight of every point
+     */
+    private final double[] weights;
+
+    /**
+     * Constructor
+     * @param domain domain of the points
+     * @param columns coordinates of the points
+     * @param weights weight of every point
+     */
+    Coreset(final Domain domain, final float[][] columns, final double[] weights) {
+        this.domain = domain;
+        this.columns = columns;
+        this.weights = weights;
+    }
+
+    @Override
+    public Domain getDomain() {
+        return domain;
+    }
+
+    @Override
+    public int size() {
+        return weights.length;
+    }
+
+    @Override
+    public float getValue(int index, int dimension) {
+        return columns[dimension][index];
+    }
+
+    @Override
+    public double getWeight(int index) {
+        return weights[index];
+    }
+
+    /**
+     * Gets the total weight of the points, that estimates the total weight of the summarized points
+     * @return total weight
+     */
+    public double getTotalWeight() {
+        double total = 0;
+        for (double weight : weights) {
+            total += weight;
+        }
+        return total;
+    }
+
+    /**
+     * Builds a coreset of some points: if they are at most size they are copied, otherwise size points are sampled
+     * (with replacement, the repeated ones are merged)
+     * @param data (possibly weighted) points
+     * @param from first index of the points (inclusive)
+     * @param to last index of the points (exclusive)
+     * @param size maximum number of points of the coreset
+     * @param random generator
+     * @return coreset
+     */
+    static Coreset sample(final Dataset data, int from, int to, int size, final SplittableRandom random) {
+        int numPoints = to - from;
+        int dimension = data.getDomain().getDimension();
+        if (numPoints <= size) {
+            float[][] columns = new float[dimension][numPoints];
+            double[] weights = new double[numPoints];
+            for (int p = 0; p < numPoints; p++) {
+                for (int j = 0; j < dimension; j++) {
+                    columns[j][p] = data.getValue(from + p, j);
+                }
+                weights[p] = data.getWeight(from + p);
+            }
+            return new Coreset(data.getDomain(), columns, weights);
+        }
+
+        double totalWeight = 0;
+        double[] mean = new double[dimension];
+        for (int p = from; p < to; p++) {
+            double weight = data.getWeight(p);
+            totalWeight += weight;
+            for (int j = 0; j < dimension; j++) {
+                mean[j] += weight * data.getValue(p, j);
+            }
+        }
+        for (int j = 0; j < dimension; j++) {
+            mean[j] /= totalWeight;
+        }
+
+        double[] cost = new double[numPoints];     // weighted squared distance from the mean
+        double totalCost = 0;
+        for (int p = 0; p < numPoints; p++) {
+            double distance = 0;
+            for (int j = 0; j < dimension; j++) {
+                double difference = data.getValue(from + p, j) - mean[j];
+                distance += difference*difference;
+            }
+            cost[p] = data.getWeight(from + p) * distance;
+            totalCost += cost[p];
+        }
+
+        double[] probability = new double[numPoints];
+        double[] cumulative = new double[numPoints];
+        double sum = 0;
+        for (int p = 0; p < numPoints; p++) {
+            probability[p] = (totalCost == 0) ? data.getWeight(from + p) / totalWeight
+                    : data.getWeight(from + p) / (2 * totalWeight) + cost[p] / (2 * totalCost);
+            sum += probability[p];
+            cumulative[p] = sum;
+        }
+
+        double[] sampledWeight = new double[numPoints];
+        int distinct = 0;
+        for (int s = 0; s < size; s++) {
+            int p = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            p = Math.min(numPoints - 1, (p < 0) ? -p - 1 : p);
+            while (probability[p] == 0) {   // a draw on the boundary of a point that can't be sampled
+                p--;
+            }
+            if (sampledWeight[p] == 0) {
+                distinct++;
+            }
+            sampledWeight[p] += data.getWeight(from + p) * sum / (size * probability[p]);
+        }
+
+        float[][] columns = new float[dimension][distinct];
+        double[] weights = new double[distinct];
+        for (int p = 0, i = 0; p < numPoints; p++) {
+            if (sampledWeight[p] > 0) {
+                for (int j = 0; j < dimension; j++) {
+                    columns[j][i] = data.getValue(from + p, j);
+                }
+                weights[i++] = sampledWeight[p];
+            }
+        }
+        return new Coreset(data.getDomain(), columns, weights);
+    }
+
+    /**
+     * Joins two coresets of the same domain
+     * @param first first coreset
+     * @param second second coreset
+     * @return coreset with the points of both
+     */
+    static Coreset union(final Coreset first, final Coreset second) {
+        float[][] columns = new float[first.columns.length][];
+        for (int j = 0; j < columns.length; j++) {
+            columns[j] = Arrays.copyOf(first.columns[j], first.size() + second.size());
+            System.arraycopy(second.columns[j], 0, columns[j], first.size(), second.size());
+        }
+        double[] weights = Arrays.copyOf(first.weights, first.size() + second.size());
+        System.arraycopy(second.weights, 0, weights, first.size(), second.size());
+        return new Coreset(first.domain, columns, weights);
+    }
+}
@@ -0,0 +1,229 @@
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Builds a {@link Coreset} of a stream of points by merge and reduce: the points are collected in chunks of coreset
+ * size, and two coresets of the same level (each summarizing 2^level chunks) are joined and sampled down to a coreset
+ * of the next level, as in a binary counter. The memory is O(size * log(points / size)), however many points are added.
+ * A builder is not thread-safe, but builders fed by different threads can be merged: {@link #build(Dataset, int, long,
+ * ForkJoinPool)} summarizes a dataset in parallel this way
+ */
+public final class CoresetBuilder {
+    private final Domain domain;
+    private final int dimension;
+
+    /**
+     * Maximum number of points of a coreset of a level
+     */
+    private final int size;
+    private final SplittableRandom random;
+
+    /**
+     * Chunk under collection: coordinates and weights of its points, and a dataset view of them
+     */
+    private final float[][] chunkColumns;
+    private final double[] chunkWeights;
+    private final Coreset chunk;
+    private int chunkSize = 0;
+
+    /**
+     * Coreset of every level, null for the empty levels
+     */
+    private final ArrayList<Coreset> levels = new ArrayList<>();
+
+    /**
+     * Constructor
+     * @param domain domain to which the points belong
+     * @param size number of points of the coresets
+     * @param seed seed of the sampling
+     * @throws NullPointerException if the domain is null
+     * @throws IllegalArgumentException if size is < 1
+     */
+    public CoresetBuilder(final Domain domain, int size, long seed) throws NullPointerException, IllegalArgumentException {
+        if (domain == null) {
+            throw new NullPointerException("Domain can't be null");
+        }
+        if (size < 1) {
+            throw new IllegalArgumentException("Size must be positive");
+        }
+        this.domain = domain;
+        this.dimension = domain.getDimension();
+        this.size = size;
+        this.random = new SplittableRandom(seed);
+        this.chunkColumns = new float[dimension][size];
+        this.chunkWeights = new double[size];
+        this.chunk = new Coreset(domain, chunkColumns, chunkWeights);
+    }
+
+    /**
+     * Adds a point
+     * @param point point
+     * @throws NullPointerException if the point is null
+     * @throws IllegalArgumentException if the point doesn't belong to the domain
+     */
+    public void add(final Point point) throws NullPointerException, IllegalArgumentException {
+        add(point, 1);
+    }
+
+    /**
+     * Adds a weighted point, that counts as many points as its weight
+     * @param point point
+     * @param weight weight of the point
+     * @throws NullPointerException if the point is null
+     * @throws IllegalArgumentException if the point doesn't belong to the domain or the weight is not positive
+     */
+    public void add(final Point point, double weight) throws NullPointerException, IllegalArgumentException {
+        if (point == null) {
+            throw new NullPointerException("Point to add can't be null");
+        }
+        if (!domain.contains(point)) {
+            throw new IllegalArgumentException("Incompatible point");
+        }
+        if (!(weight > 0)) {
+            throw new IllegalArgumentException("Weight must be positive");
+        }
+        for (int j = 0; j < dimension; j++) {
+            chunkColumns[j][chunkSize] = point.getCoordinate(j + 1);
+                // cannot throws exception because the point belongs to the domain
+        }
+        append(weight);
+    }
+
+    /**
+     * Adds the points of a set
+     * @param sop Set Of Points
+     * @throws NullPointerException if the set of points is null
+     * @throws IllegalArgumentException if the set doesn't belong to the domain
+     */
+    public void addAll(final SetOfPoints<? extends Point> sop) throws NullPointerException, IllegalArgumentException {
+        if (!domain.equals(sop.getDomain())) {
+            throw new IllegalArgumentException("Incompatible domain");
+        }
+        for (Point p : sop.points) {
+            add(p, 1);
+        }
+    }
+
+    /**
+     * Adds the (possibly weighted) points of a dataset
+     * @param data points
+     * @throws NullPointerException if the dataset is null
+     * @throws IllegalArgumentException if the dataset doesn't belong to the domain
+     */
+    public void addAll(final Dataset data) throws NullPointerException, IllegalArgumentException {
+        if (!domain.equals(data.getDomain())) {
+            throw new IllegalArgumentException("Incompatible domain");
+        }
+        addAll(data, 0, data.size());
+    }
+
+    /**
+     * Merges in this builder the points added to another one, that is left unchanged
+     * @param other builder
+     * @throws NullPointerException if the other builder is null
+     * @throws IllegalArgumentException if the other builder is this one or has a different domain or size
+     */
+    public void merge(final CoresetBuilder other) throws NullPointerException, IllegalArgumentException {
+        if (other == this || !domain.equals(other.domain) || size != other.size) {
+            throw new IllegalArgumentException("Incompatible builder");
+        }
+        for (int level = 0; level < other.levels.size(); level++) {
+            if (other.levels.get(level) != null) {
+                insert(other.levels.get(level), level);
+            }
+        }
+        addAll(other.chunk, 0, other.chunkSize);
+    }
+
+    /**
+     * Builds the coreset of the points added so far: the union of the coresets of all the levels and of the chunk
+     * under collection, so it has at most size * (levels + 1) points. The builder can keep collecting points
+     * @return coreset
+     */
+    public Coreset build() {
+        Coreset coreset = Coreset.sample(chunk, 0, chunkSize, size, random);  // a copy, as the chunk has at most size points
+        for (Coreset level : levels) {
+            if (level != null) {
+                coreset = Coreset.union(coreset, level);
+            }
+        }
+        return coreset;
+    }
+
+    /**
+     * Builds the coreset of a dataset, splitting it in fixed slices that are summarized (possibly in parallel) by
+     * different builders and merged in order, so that the coreset doesn't depend on the pool
+     * @param data (possibly weighted) points
+     * @param size number of points of the coresets
+     * @param seed seed of the sampling
+     * @param pool pool on which the slices are summarized, null for the sequential execution
+     * @return coreset
+     * @throws NullPointerException if the dataset is null
+     * @throws IllegalArgumentException if size is < 1
+     */
+    public static Coreset build(final Dataset data, int size, long seed, final ForkJoinPool pool) throws NullPointerException, IllegalArgumentException {
+        if (data == null) {
+            throw new NullPointerException("Input data can't be null");
+        }
+        if (size < 1) {
+            throw new IllegalArgumentException("Size must be positive");
+        }
+        int sliceSize = Math.max(UpdateTask.SLICE_SIZE, 4 * size);
+        int slices = Math.max(1, (data.size() + sliceSize - 1) / sliceSize);
+        CoresetBuilder[] builders = new CoresetBuilder[slices];
+        SliceAction.run(slices, s -> {
+            builders[s] = new CoresetBuilder(data.getDomain(), size, seed + s);
+            builders[s].addAll(data, s * sliceSize, Math.min(data.size(), (s + 1) * sliceSize));
+        }, pool);
+
+        for (int s = 1; s < slices; s++) {
+            builders[0].merge(builders[s]);
+        }
+        return builders[0].build();
+    }
+
+    /**
+     * Adds a range of points of a dataset of the same domain
+     * @param data points
+     * @param from first index (inclusive)
+     * @param to last index (exclusive)
+     */
+    private void addAll(final Dataset data, int from, int to) {
+        for (int p = from; p < to; p++) {
+            for (int j = 0; j < dimension; j++) {
+                chunkColumns[j][chunkSize] = data.getValue(p, j);
+            }
+            append(data.getWeight(p));
+        }
+    }
+
+    /**
+     * Completes the point written at the end of the chunk, and reduces the chunk if it is full
+     * @param weight weight of the point
+     */
+    private void append(double weight) {
+        chunkWeights[chunkSize++] = weight;
+        if (chunkSize == size) {
+            insert(Coreset.sample(chunk, 0, size, size, random), 0);
+            chunkSize = 0;
+        }
+    }
+
+    /**
+     * Inserts a coreset in a level, merging and reducing it with the coresets of that level and of the next ones
+     * @param coreset coreset
+     * @param level level of the coreset
+     */
+    private void insert(Coreset coreset, int level) {
+        while (level < levels.size() && levels.get(level) != null) {
+            Coreset union = Coreset.union(levels.get(level), coreset);
+            coreset = Coreset.sample(union, 0, union.size(), size, random);
+            levels.set(level++, null);
+        }
+        while (levels.size() <= level) {
+            levels.add(null);
+        }
+        levels.set(level, coreset);
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * Represents a set of points all belonging the same domain, addressed by index, whose coordinates can be read without
+ * materializing Point objects
+ */
+public interface Dataset {
+    /**
+     * @return domain
+     */
+    Domain getDomain();
+
+    /**
+     * Gets the number of points
+     * @return size
+     */
+    int size();
+
+    /**
+     * Gets a coordinate of a point. For performance reasons the indexes are 0-indexed and not checked
+     * @param index index of the point, in [0, size)
+     * @param dimension coordinate to get, in [0, dimension of the domain)
+     * @return value of the coordinate
+     */
+    float getValue(int index, int dimension);
+
+    /**
+     * Gets the weight of a point, i.e. how many times it counts in the clusterization. For performance reasons the
+     * index is not checked
+     * @param index index of the point, in [0, size)
+     * @return weight (1 if the points are not weighted)
+     */
+    default double getWeight(int index) {
+        return 1;
+    }
+
+    /**
+     * Materializes a point of the set
+     * @param index index of the point
+     * @return point
+     * @throws IndexOutOfBoundsException if the index is <0 or >=size
+     */
+    default Point getPoint(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Invalid index");
+        }
+        float[] coordinates = new float[getDomain().getDimension()];
+        for (int j = 0; j < coordinates.length; j++) {
+            coordinates[j] = getValue(index, j);
+        }
+        return new Point(coordinates);
+    }
+}
@@ -0,0 +1,273 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Computes the exact diameter (maximum distance between two points) of a set of points without comparing all the
+ * pairs. A few farthest-point sweeps find a pair that is the farthest or close to it; then every point gets its
+ * distance r from the center of the bounding box and, as two points are at most r1 + r2 apart, only the pairs whose
+ * radii can beat the best distance found so far are compared, from the outermost points inwards. Duplicated points
+ * are compared once.
+ * The distances are computed with the same arithmetic of Point.getEuclideanDistance, so the result is exactly the
+ * maximum over all the pairs. The worst case (all the points on a sphere) is still quadratic, but clusters are compact
+ * and only a thin shell of points survives the pruning. The points are processed in fixed slices, possibly in
+ * parallel, and the result doesn't depend on the pool
+ */
+final class Diameter {
+    /**
+     * Number of outer points of a slice of the comparison of the pairs
+     */
+    private static final int PAIRS_SLICE_SIZE = 256;
+
+    /**
+     * Maximum number of farthest-point sweeps
+     */
+    private static final int SWEEPS = 4;
+
+    /**
+     * Relative margin of the pruning, that covers the rounding errors of the float distances
+     */
+    private static final double MARGIN = 1e-4;
+
+    /**
+     * Coordinates of the points: columns[j][i] is the j-th coordinate of the i-th point
+     */
+    private final float[][] columns;
+    private final ForkJoinPool pool;
+    private final int numPoints, dimension, slices;
+
+    /**
+     * Maximum squared distance and index of its point (the first one) of every slice
+     */
+    private final float[] sliceMax;
+    private final int[] sliceArgMax;
+
+    /**
+     * Constructor
+     * @param columns coordinates of the points
+     * @param pool pool on which the slices are processed, null for the sequential execution
+     */
+    private Diameter(final float[][] columns, final ForkJoinPool pool) {
+        this.columns = columns;
+        this.pool = pool;
+        this.numPoints = columns[0].length;
+        this.dimension = columns.length;
+        this.slices = (numPoints + UpdateTask.SLICE_SIZE - 1) / UpdateTask.SLICE_SIZE;
+        this.sliceMax = new float[slices];
+        this.sliceArgMax = new int[slices];
+    }
+
+    /**
+     * Computes the diameter of a set of points
+     * @param columns coordinates of the points: columns[j][i] is the j-th coordinate of the i-th point
+     * @param pool pool on which the points are processed, null for the sequential execution
+     * @return diameter, 0 if there are less than 2 points
+     */
+    static float of(final float[][] columns, final ForkJoinPool pool) {
+        if (columns.length == 0 || columns[0].length < 2) {
+            return 0;
+        }
+        Diameter diameter = new Diameter(columns, pool);
+        return (float) Math.sqrt(diameter.maxSquaredDistance(diameter.sweep()));
+    }
+
+    /**
+     * Repeats the farthest-point sweep from the last point found, while the distance grows
+     * @return squared distance of the farthest pair found
+     */
+    private float sweep() {
+        float best = 0;
+        int from = 0;
+        for (int i = 0; i < SWEEPS; i++) {
+            int to = farthest(from);
+            float distance = squaredDistance(from, to);
+            if (distance <= best) {
+                break;
+            }
+            best = distance;
+            from = to;
+        }
+        return best;
+    }
+
+    /**
+     * Finds the point farthest from a point
+     * @param from index of the point
+     * @return index of the farthest point (the first one)
+     */
+    private int farthest(int from) {
+        SliceAction.run(slices, s -> {
+            float max = -1;
+            int argMax = 0;
+            for (int p = s * UpdateTask.SLICE_SIZE, end = Math.min(numPoints, p + UpdateTask.SLICE_SIZE); p < end; p++) {
+                float distance = squaredDistance(from, p);
+                if (distance > max) {
+                    max = distance;
+                    argMax = p;
+                }
+            }
+            sliceMax[s] = max;
+            sliceArgMax[s] = argMax;
+        }, pool);
+
+        float max = sliceMax[0];
+        int farthest = sliceArgMax[0];
+        for (int s = 1; s < slices; s++) {
+            if (sliceMax[s] > max) {
+                max = sliceMax[s];
+                farthest = sliceArgMax[s];
+            }
+        }
+        return farthest;
+    }
+
+    /**
+     * Compares the pairs of points that can be farther than a known pair
+     * @param lowerBound squared distance of a known pair
+     * @return maximum squared distance
+     */
+    private float maxSquaredDistance(float lowerBound) {
+        double[] center = center();
+        float[] radius = new float[numPoints];
+        SliceAction.run(slices, s -> {
+            for (int p = s * UpdateTask.SLICE_SIZE, end = Math.min(numPoints, p + UpdateTask.SLICE_SIZE); p < end; p++) {
+                double squaredRadius = 0;
+                for (int j = 0; j < dimension; j++) {
+                    double difference = columns[j][p] - center[j];
+                    squaredRadius += difference*difference;
+                }
+                radius[p] = Math.nextUp((float) Math.sqrt(squaredRadius));    // rounded up, so it is still a bound
+            }
+        }, pool);
+
+        float maxRadius = 0;
+        for (float r : radius) {
+            maxRadius = Math.max(maxRadius, r);
+        }
+        double threshold = threshold(lowerBound);
+        int[] candidates = candidates(radius, threshold - maxRadius);
+        float[] candidatesRadius = new float[candidates.length];
+        for (int a = 0; a < candidates.length; a++) {
+            candidatesRadius[a] = radius[candidates[a]];
+        }
+
+        int pairsSlices = (candidates.length + PAIRS_SLICE_SIZE - 1) / PAIRS_SLICE_SIZE;
+        float[] pairsSliceMax = new float[pairsSlices];
+        SliceAction.run(pairsSlices, s -> {
+            float max = lowerBound;
+            double sliceThreshold = threshold;
+            for (int a = s * PAIRS_SLICE_SIZE, end = Math.min(candidates.length, a + PAIRS_SLICE_SIZE); a < end; a++) {
+                if (candidatesRadius[a] + candidatesRadius[0] < sliceThreshold) {
+                    break;      // the candidates are sorted by decreasing radius, so no later pair can be farther
+                }
+                for (int b = 0; b < a && candidatesRadius[a] + candidatesRadius[b] >= sliceThreshold; b++) {
+                    float distance = squaredDistance(candidates[a], candidates[b]);
+                    if (distance > max) {
+                        max = distance;
+                        sliceThreshold = threshold(max);
+                    }
+                }
+            }
+            pairsSliceMax[s] = max;
+        }, pool);
+
+        float max = lowerBound;
+        for (float sliceMaxDistance : pairsSliceMax) {
+            max = Math.max(max, sliceMaxDistance);
+        }
+        return max;
+    }
+
+    /**
+     * Computes the center of the bounding box of the points
+     * @return center
+     */
+    private double[] center() {
+        float[][] sliceMin = new float[slices][dimension];
+        float[][] sliceMaxCoordinates = new float[slices][dimension];
+        SliceAction.run(slices, s -> {
+            int start = s * UpdateTask.SLICE_SIZE, end = Math.min(numPoints, start + UpdateTask.SLICE_SIZE);
+            for (int j = 0; j < dimension; j++) {
+                float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+                for (int p = start; p < end; p++) {
+                    min = Math.min(min, columns[j][p]);
+                    max = Math.max(max, columns[j][p]);
+                }
+                sliceMin[s][j] = min;
+                sliceMaxCoordinates[s][j] = max;
+            }
+        }, pool);
+
+        double[] center = new double[dimension];
+        for (int j = 0; j < dimension; j++) {
+            float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+            for (int s = 0; s < slices; s++) {
+                min = Math.min(min, sliceMin[s][j]);
+                max = Math.max(max, sliceMaxCoordinates[s][j]);
+            }
+            center[j] = ((double) min + max) / 2;
+        }
+        return center;
+    }
+
+    /**
+     * Selects the points whose radius is at least a minimum, sorted by decreasing radius, without duplicates
+     * @param radius radius of every point
+     * @param minRadius minimum radius
+     * @return indexes of the selected points
+     */
+    private int[] candidates(final float[] radius, double minRadius) {
+        long[] keys = new long[numPoints];
+        int count = 0;
+        for (int p = 0; p < numPoints; p++) {
+            if (radius[p] >= minRadius) {
+                keys[count++] = (long) Float.floatToIntBits(radius[p]) << 32 | p;
+                    // the radii are not negative, so their bits are in the same order of their values
+            }
+        }
+        keys = Arrays.copyOf(keys, count);
+        Arrays.sort(keys);
+
+        int[] candidates = new int[count];
+        int selected = 0;
+        int runStart = 0;      // first selected point with the radius of the current one
+        for (int i = count - 1; i >= 0; i--) {
+            int p = (int) keys[i];
+            if (selected > 0 && radius[candidates[selected - 1]] != radius[p]) {
+                runStart = selected;
+            }
+            boolean duplicate = false;
+            for (int q = runStart; q < selected && !duplicate; q++) {
+                duplicate = squaredDistance(candidates[q], p) == 0;
+            }
+            if (!duplicate) {
+                candidates[selected++] = p;
+            }
+        }
+        return Arrays.copyOf(candidates, selected);
+    }
+
+    /**
+     * Computes the sum of radii under which a pair surely can't be farther than a squared distance
+     * @param squaredDistance squared distance
+     * @return threshold
+     */
+    private static double threshold(float squaredDistance) {
+        return Math.sqrt(squaredDistance) * (1 - MARGIN);
+    }
+
+    /**
+     * Calculates the squared euclidean distance between two points, with the same arithmetic of
+     * Point.getSquaredEuclideanDistance
+     * @param first index of the first point
+     * @param second index of the second point
+     * @return distance
+     */
+    private float squaredDistance(int first, int second) {
+        float distance = 0;
+        for (int j = 0; j < dimension; j++) {
+            float difference = columns[j][first] - columns[j][second];
+            distance += difference*difference;
+        }
+        return distance;
+    }
+}
@@ -0,0 +1,240 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Distances with which k-means assigns the points to the centroids.
+ * COSINE and CIELAB are the euclidean distance in another space: the points are transformed only once, before the
+ * clusterization, and the iterations run the same assignment of EUCLIDEAN (also with the SIMD kernel and the Hamerly
+ * strategy) on the transformed points, without any conversion per pair of points
+ */
+public enum DistanceMetric {
+    /**
+     * Euclidean distance: the centroids are the means of their points (Lloyd)
+     */
+    EUCLIDEAN {
+        @Override
+        public float distance(final float[] first, final float[] second) {
+            return (float) Math.sqrt(squaredDistance(first, second));
+        }
+    },
+
+    /**
+     * Manhattan distance, the sum of the absolute differences of the coordinates: the centroids are the (weighted)
+     * medians of every coordinate of their points (k-medians), that cost O(n log n) for every iteration and every
+     * dimension. It has its own assignment, so it uses neither the SIMD kernel nor the Hamerly strategy
+     */
+    MANHATTAN {
+        @Override
+        public float distance(final float[] first, final float[] second) {
+            float sum = 0;
+            for (int j = 0; j < first.length; j++) {
+                sum += Math.abs(first[j] - second[j]);
+            }
+            return sum;
+        }
+    },
+
+    /**
+     * Cosine distance, 1 - cos of the angle between the points: the points are normalized to unit length, on which the
+     * squared euclidean distance is 2 * (1 - cos), and the centroids are the normalized means of their points
+     * (spherical k-means). A point in the origin is at distance 1 from every centroid
+     */
+    COSINE {
+        @Override
+        public float distance(final float[] first, final float[] second) {
+            double dot = 0, firstNorm = 0, secondNorm = 0;
+            for (int j = 0; j < first.length; j++) {
+                dot += first[j] * (double) second[j];
+                firstNorm += first[j] * (double) first[j];
+                secondNorm += second[j] * (double) second[j];
+            }
+            return (firstNorm == 0 || secondNorm == 0) ? 1 : (float) (1 - dot / Math.sqrt(firstNorm * secondNorm));
+        }
+
+        @Override
+        Dataset transform(final Dataset data, final ForkJoinPool pool) {
+            int dimension = data.getDomain().getDimension();
+            float[] lowerBounds = new float[dimension];
+            float[] upperBounds = new float[dimension];
+            Arrays.fill(lowerBounds, -1);
+            Arrays.fill(upperBounds, 1);
+            int size = data.size();
+            ColumnarDataset normalized = new ColumnarDataset(Domain.of(lowerBounds, upperBounds), size, data);
+            float[][] columns = normalized.getColumns();
+
+            int slices = (size + UpdateTask.SLICE_SIZE - 1) / UpdateTask.SLICE_SIZE;
+            SliceAction.run(slices, s -> {
+                for (int p = s * UpdateTask.SLICE_SIZE, to = Math.min(p + UpdateTask.SLICE_SIZE, size); p < to; p++) {
+                    double squareSum = 0;
+                    for (int j = 0; j < dimension; j++) {
+                        float value = data.getValue(p, j);
+                        squareSum += value * (double) value;
+                    }
+                    double scale = (squareSum == 0) ? 0 : 1 / Math.sqrt(squareSum);
+                    for (int j = 0; j < dimension; j++) {
+                        columns[j][p] = (float) (data.getValue(p, j) * scale);
+                    }
+                }
+            }, pool);
+            return normalized;
+        }
+
+        @Override
+        void updateCentroids(final float[] centroids, int dimension) {
+            for (int offset = 0; offset < centroids.length; offset += dimension) {
+                double squareSum = 0;
+                for (int j = 0; j < dimension; j++) {
+                    squareSum += centroids[offset + j] * (double) centroids[offset + j];
+                }
+                if (squareSum > 0) {
+                    double scale = 1 / Math.sqrt(squareSum);
+                    for (int j = 0; j < dimension; j++) {
+                        centroids[offset + j] = (float) (centroids[offset + j] * scale);
+                    }
+                }
+            }
+        }
+    },
+
+    /**
+     * Perceptual colour distance CIE76 (delta E), the euclidean distance in the CIELAB space (D65 white): the RGB points
+     * (sRGB, with values in [0, 255]) are converted to CIELAB, so the points must have 3 dimensions
+     */
+    CIELAB {
+        @Override
+        public float distance(final float[] first, final float[] second) {
+            if (first.length != 3) {
+                throw new IllegalArgumentException("CIELAB distance is defined only for RGB points");
+            }
+            float[] firstLab = new float[3];
+            float[] secondLab = new float[3];
+            toLab(first[0], first[1], first[2], firstLab);
+            toLab(second[0], second[1], second[2], secondLab);
+            return (float) Math.sqrt(squaredDistance(firstLab, secondLab));
+        }
+
+        @Override
+        Dataset transform(final Dataset data, final ForkJoinPool pool) {
+            if (data.getDomain().getDimension() != 3) {
+                throw new IllegalArgumentException("CIELAB distance is defined only for RGB points");
+            }
+            int size = data.size();
+            ColumnarDataset lab = new ColumnarDataset(Domain.of(new float[]{0, -128, -128}, new float[]{100, 128, 128}), size, data);
+            float[][] columns = lab.getColumns();
+
+            int slices = (size + UpdateTask.SLICE_SIZE - 1) / UpdateTask.SLICE_SIZE;
+            SliceAction.run(slices, s -> {
+                float[] value = new float[3];
+                for (int p = s * UpdateTask.SLICE_SIZE, to = Math.min(p + UpdateTask.SLICE_SIZE, size); p < to; p++) {
+                    toLab(data.getValue(p, 0), data.getValue(p, 1), data.getValue(p, 2), value);
+                    columns[0][p] = value[0];
+                    columns[1][p] = value[1];
+                    columns[2][p] = value[2];
+                }
+            }, pool);
+            return lab;
+        }
+    };
+
+    /**
+     * Linear intensity of the 256 integer values of a sRGB component
+     */
+    private static final double[] LINEAR = new double[256];
+
+    static {
+        for (int v = 0; v < 256; v++) {
+            LINEAR[v] = decode(v);
+        }
+    }
+
+    /**
+     * Calculates the distance between two points
+     * @param first coordinates of the first point
+     * @param second coordinates of the second point, of the same dimension
+     * @return distance
+     * @throws IllegalArgumentException if the metric is not defined for the dimension of the points
+     */
+    public abstract float distance(final float[] first, final float[] second) throws IllegalArgumentException;
+
+    /**
+     * Transforms a dataset in the space in which this metric is the euclidean distance
+     * @param data points
+     * @param pool pool on which the points are transformed, null for the sequential execution
+     * @return transformed points (with the same weights), or the same dataset if it is not transformed
+     * @throws IllegalArgumentException if the metric is not defined for the dimension of the points
+     */
+    Dataset transform(final Dataset data, final ForkJoinPool pool) throws IllegalArgumentException {
+        return data;
+    }
+
+    /**
+     * Adjusts the means of the clusters computed at an iteration, in the transformed space
+     * @param centroids centroids (flattened), updated in place
+     * @param dimension dimension of the points
+     */
+    void updateCentroids(final float[] centroids, int dimension) { }
+
+    /**
+     * Converts a sRGB colour to CIELAB (D65 white)
+     * @param r red, in [0, 255]
+     * @param g green, in [0, 255]
+     * @param b blue, in [0, 255]
+     * @param lab buffer of the L*, a*, b* coordinates
+     */
+    static void toLab(float r, float g, float b, final float[] lab) {
+        double red = linear(r);
+        double green = linear(g);
+        double blue = linear(b);
+        double x = labFunction((0.4124564 * red + 0.3575761 * green + 0.1804375 * blue) / 0.95047);
+        double y = labFunction(0.2126729 * red + 0.7151522 * green + 0.0721750 * blue);
+        double z = labFunction((0.0193339 * red + 0.1191920 * green + 0.9503041 * blue) / 1.08883);
+        lab[0] = (float) (116 * y - 16);
+        lab[1] = (float) (500 * (x - y));
+        lab[2] = (float) (200 * (y - z));
+    }
+
+    /**
+     * Calculates the linear intensity of a sRGB component, from the table if the value is an integer
+     * @param value component, in [0, 255]
+     * @return linear intensity, in [0, 1]
+     */
+    private static double linear(float value) {
+        int integer = (int) value;
+        return (integer == value && integer >= 0 && integer < 256) ? LINEAR[integer] : decode(value);
+    }
+
+    /**
+     * Calculates the linear intensity of a sRGB component (inverse of the sRGB gamma)
+     * @param value component, in [0, 255]
+     * @return linear intensity, in [0, 1]
+     */
+    private static double decode(double value) {
+        double c = value / 255;
+        return (c <= 0.04045) ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+    }
+
+    /**
+     * Non-linear function of the CIELAB conversion
+     * @param t ratio of a XYZ coordinate to the one of the white
+     * @return f(t)
+     */
+    private static double labFunction(double t) {
+        final double delta = 6.0 / 29;
+        return (t > delta * delta * delta) ? Math.cbrt(t) : t / (3 * delta * delta) + 4.0 / 29;
+    }
+
+    /**
+     * Calculates the squared euclidean distance between two coordinate arrays
+     * @param first first point
+     * @param second second point
+     * @return distance
+     */
+    private static double squaredDistance(final float[] first, final float[] second) {
+        double squareSum = 0;
+        for (int j = 0; j < first.length; j++) {
+            double difference = first[j] - second[j];
+            squareSum += difference*difference;
+        }
+        return squareSum;
+    }
+}
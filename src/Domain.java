@@ -102,6 +102,27 @@ public final class Domain {
         return new Domain(dimension, lowerUnbound, upperUnbound);
     }
 
+    /**
+     * Creates a domain with the given bounds
+     * @param lowerBounds array of lower-bounds
+     * @param upperBounds array of upper-bounds
+     * @return domain
+     * @throws NullPointerException if lower or upper bounds are null
+     * @throws IllegalArgumentException if lower and upper bounds have different lengths or a lower-bound is greater
+     * than its upper-bound
+     */
+    public static Domain of(final float[] lowerBounds, final float[] upperBounds) throws NullPointerException, IllegalArgumentException {
+        if (lowerBounds == null || upperBounds == null) {
+            throw new NullPointerException("Lower and upper bounds can't be null");
+        }
+        for (int i = 0; i < Math.min(lowerBounds.length, upperBounds.length); i++) {
+            if (!(lowerBounds[i] <= upperBounds[i])) {
+                throw new IllegalArgumentException("Lower-bounds can't be greater than upper-bounds");
+            }
+        }
+        return new Domain(lowerBounds.length, lowerBounds, upperBounds);
+    }
+
     /**
      * Creates the RGB space
      * @return RGB space
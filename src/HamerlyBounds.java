@@ -0,0 +1,132 @@
+import static java.lang.Math.max;
+import static java.lang.Math.sqrt;
+
+/**
+ * Distance bounds used by the Hamerly assignment: for every point a lower bound of the distance from all the centroids
+ * except its own, plus the per-iteration information on the centroids needed to keep them valid. The upper bound of
+ * the distance from its own centroid is not stored: the distance is computed exactly at every iteration, as it is
+ * needed for the inertia anyway.
+ * The bounds are adjusted lazily: a point applies the movement of the centroids only when it is processed
+ */
+final class HamerlyBounds {
+    /**
+     * Relative safety margin of the bound tests, larger than the floating-point rounding errors: a point skips the
+     * computation of the distances only when its centroid is nearer than all the others by at least this margin, so
+     * its cluster is the same chosen by the brute force
+     */
+    static final float MARGIN = 1e-4F;
+
+    /**
+     * Lower bound of the distance of every point from all the centroids except its own
+     */
+    final float[] lower;
+
+    /**
+     * Half distance of every centroid from the nearest other centroid
+     */
+    final float[] halfMinDistance;
+
+    /**
+     * Distance covered by every centroid in the last update
+     */
+    final float[] shift;
+
+    /**
+     * Largest shift and index of the centroid with the largest shift
+     */
+    float maxShift;
+    int maxShiftCentroid;
+
+    /**
+     * Second largest shift, used for the points of the centroid with the largest shift
+     */
+    float secondMaxShift;
+
+    private final int k, dimension;
+
+    /**
+     * Centroids of the previous iteration (flattened)
+     */
+    private final float[] previous;
+
+    private boolean first = true;
+
+    /**
+     * Constructor. All the lower bounds are 0, so at the first iteration a point skips the distances from the other
+     * centroids only if it is nearer to its initial centroid than half the distance between that centroid and all the
+     * others
+     * @param numPoints number of points
+     * @param k number of clusters
+     * @param dimension dimension of the points
+     */
+    HamerlyBounds(int numPoints, int k, int dimension) {
+        this.k = k;
+        this.dimension = dimension;
+        this.lower = new float[numPoints];
+        this.halfMinDistance = new float[k];
+        this.shift = new float[k];
+        this.previous = new float[k * dimension];
+    }
+
+    /**
+     * Prepares the information on the centroids for the next iteration: how much every centroid moved from the
+     * previous iteration and how far it is from the nearest other centroid
+     * @param centroids centroids of the next iteration (flattened)
+     */
+    void prepare(final float[] centroids) {
+        maxShift = 0;
+        secondMaxShift = 0;
+        maxShiftCentroid = 0;
+        for (int c = 0; c < k; c++) {
+            shift[c] = first ? 0 : (float) sqrt(squaredDistance(previous, c, centroids, c));
+            if (shift[c] > maxShift) {
+                secondMaxShift = maxShift;
+                maxShift = shift[c];
+                maxShiftCentroid = c;
+            } else if (shift[c] > secondMaxShift) {
+                secondMaxShift = shift[c];
+            }
+        }
+        first = false;
+        System.arraycopy(centroids, 0, previous, 0, centroids.length);
+
+        for (int c = 0; c < k; c++) {
+            halfMinDistance[c] = Float.POSITIVE_INFINITY;
+        }
+        for (int c = 0; c < k; c++) {
+            for (int other = c + 1; other < k; other++) {
+                float half = (float) (sqrt(squaredDistance(centroids, c, centroids, other)) / 2);
+                halfMinDistance[c] = Math.min(halfMinDistance[c], half);
+                halfMinDistance[other] = Math.min(halfMinDistance[other], half);
+            }
+        }
+    }
+
+    /**
+     * Checks if the bounds of a point exclude a change of cluster
+     * @param upper upper bound of the distance from its centroid
+     * @param lower lower bound of the distance from the other centroids
+     * @param centroid its centroid
+     * @return true if the point surely remains in its cluster
+     */
+    boolean excludesChange(float upper, float lower, int centroid) {
+        return upper * (1 + MARGIN) < max(halfMinDistance[centroid], lower) * (1 - MARGIN);
+    }
+
+    /**
+     * Calculates the squared euclidean distance between two centroids
+     * @param first first array of flattened centroids
+     * @param i index of the centroid in the first array
+     * @param second second array of flattened centroids
+     * @param j index of the centroid in the second array
+     * @return distance
+     */
+    private double squaredDistance(final float[] first, int i, final float[] second, int j) {
+        double squareSum = 0;
+        for (int d = 0; d < dimension; d++) {
+            double difference = first[i * dimension + d] - second[j * dimension + d];
+            squareSum += difference*difference;
+        }
+        return squareSum;
+    }
+}
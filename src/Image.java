@@ -1,9 +1,23 @@
 import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Functoide with all operation that can be applied on an image
@@ -20,7 +34,7 @@ public class Image {
     }
 
     /**
-     * Convert the image in a set of pixel (seen as point)
+     * Convert the image in a set of pixel (seen as point), row by row
      * @param img image to pixelize
      * @return set of pixel
      * @throws NullPointerException if the image is null
@@ -31,10 +45,11 @@ public class Image {
         }
 
         SetOfPoints<RGBPixel> data = new SetOfPoints<>(Domain.RGB());
-        for (int x = 0; x < img.getWidth(); x++) {
-            for (int y = 0; y < img.getHeight(); y++) {
-                Color color = new Color(img.getRGB(x, y));
-                RGBPixel p = new RGBPixel(x, y, color.getRed(), color.getGreen(), color.getBlue());
+        int[] row = new int[img.getWidth()];
+        for (int y = 0; y < img.getHeight(); y++) {
+            readRow(img, y, row, 0);
+            for (int x = 0; x < row.length; x++) {
+                RGBPixel p = new RGBPixel(x, y, (row[x] >> 16) & 0xFF, (row[x] >> 8) & 0xFF, row[x] & 0xFF);
                 data.add(p);    // cannot throws exception because we ensure that "p" is not null and contained in the domain
             }
         }
@@ -42,6 +57,62 @@ public class Image {
         return data;
     }
 
+    /**
+     * Convert the image in a dataset of colours, without creating an object for every pixel.
+     * The pixels are stored row by row, so the pixel (x, y) has index y*width + x
+     * @param img image to convert
+     * @return dataset of the colours of the pixels
+     * @throws NullPointerException if the image is null
+     */
+    public static ColumnarDataset toDataset(BufferedImage img) throws NullPointerException {
+        if (img == null) {
+            throw new NullPointerException("Image can't be null");
+        }
+
+        int width = img.getWidth();
+        ColumnarDataset data = new ColumnarDataset(Domain.RGB(), width * img.getHeight());
+        int[] row = new int[width];
+        for (int y = 0; y < img.getHeight(); y++) {
+            readRow(img, y, row, 0);
+            for (int x = 0, index = y * width; x < width; x++, index++) {
+                data.setValue(index, 0, (row[x] >> 16) & 0xFF);
+                data.setValue(index, 1, (row[x] >> 8) & 0xFF);
+                data.setValue(index, 2, row[x] & 0xFF);
+                    // cannot throws exception because we respect the size and colours are always in the RGB domain
+            }
+        }
+
+        return data;
+    }
+
+    /**
+     * Convert the image in a compact dataset of colours, with 3 bytes for every pixel.
+     * The pixels are stored row by row, so the pixel (x, y) has index y*width + x
+     * @param img image to convert
+     * @return dataset of the colours of the pixels
+     * @throws NullPointerException if the image is null
+     */
+    public static RGBDataset toRGBDataset(BufferedImage img) throws NullPointerException {
+        if (img == null) {
+            throw new NullPointerException("Image can't be null");
+        }
+
+        int width = img.getWidth();
+        RGBDataset data = new RGBDataset(width, img.getHeight());
+        byte[][] channels = data.getChannels();
+        int[] row = new int[width];
+        for (int y = 0; y < img.getHeight(); y++) {
+            readRow(img, y, row, 0);
+            for (int x = 0, index = y * width; x < width; x++, index++) {
+                channels[0][index] = (byte) (row[x] >> 16);
+                channels[1][index] = (byte) (row[x] >> 8);
+                channels[2][index] = (byte) row[x];
+            }
+        }
+
+        return data;
+    }
+
     /**
      * Save on the filesystem as PNG a segmentation of an image
      * @param clusters segments
@@ -57,18 +128,161 @@ public class Image {
         }
 
         BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        byte[] pixels = ((DataBufferByte) img.getRaster().getDataBuffer()).getData();
         for (Cluster<RGBPixel> c : clusters) {
-            Point center = c.getCenter();
-            float r = (float)((int) center.getCoordinate(1))/255;
-            float g = (float)((int) center.getCoordinate(2))/255;
-            float b = (float)((int) center.getCoordinate(3))/255;
-            Color color = new Color((r > 1 ? 1 : r), (g > 1 ? 1 : g), (b > 1 ? 1 : b));     // due floating-point arithmetic sometimes can be > 1
-                // cannot throw exception because a center of a cluster of RGBPixel has certainly 3 dimensions
+            Color color = toColor(c.getCenter());
             for (RGBPixel p : c.getPoints()) {
-                img.setRGB(p.getX(), p.getY(), color.getRGB());
+                int offset = 3 * (p.getY() * width + p.getX());
+                pixels[offset] = (byte) color.getBlue();
+                pixels[offset + 1] = (byte) color.getGreen();
+                pixels[offset + 2] = (byte) color.getRed();
             }
         }
 
         ImageIO.write(img, "png", new File(path));
     }
+
+    /**
+     * Save on the filesystem as PNG a segmentation of an image converted by {@link #toDataset(BufferedImage)}
+     * @param clustering segmentation
+     * @param path path of the file in the filesystem
+     * @param width width of the image
+     * @param height height of the image
+     * @throws IOException if an error occurs writing the file
+     * @throws NullPointerException if the clustering is null
+     * @throws IllegalArgumentException if the clustering doesn't have width*height points
+     */
+    public static void export(Clustering clustering, String path, int width, int height) throws IOException, NullPointerException, IllegalArgumentException {
+        if (clustering == null) {
+            throw new NullPointerException("Clustering can't be null");
+        }
+        if (clustering.size() != width * height) {
+            throw new IllegalArgumentException("Clustering doesn't match the image size");
+        }
+
+        byte[] palette = new byte[3 * clustering.getK()];     // in the BGR order of the image
+        for (int c = 0; c < clustering.getK(); c++) {
+            Color color = toColor(clustering.getCentroid(c));
+            palette[3 * c] = (byte) color.getBlue();
+            palette[3 * c + 1] = (byte) color.getGreen();
+            palette[3 * c + 2] = (byte) color.getRed();
+        }
+
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        byte[] pixels = ((DataBufferByte) img.getRaster().getDataBuffer()).getData();
+        for (int i = 0, offset = 0; i < clustering.size(); i++, offset += 3) {
+            System.arraycopy(palette, 3 * clustering.getLabel(i), pixels, offset, 3);
+        }
+
+        ImageIO.write(img, "png", new File(path));
+    }
+
+    /**
+     * Save on the filesystem as palette-indexed PNG a segmentation of an image: every pixel is stored as the index of its
+     * colour, with 1, 2, 4 or 8 bits depending on k, so the file is smaller and faster to write than the RGB one
+     * @param clustering segmentation, with at most 256 clusters
+     * @param path path of the file in the filesystem
+     * @param width width of the image
+     * @param height height of the image
+     * @throws IOException if an error occurs writing the file
+     * @throws NullPointerException if the clustering is null
+     * @throws IllegalArgumentException if the clustering doesn't have width*height points or has more than 256 clusters
+     */
+    public static void exportIndexed(Clustering clustering, String path, int width, int height) throws IOException, NullPointerException, IllegalArgumentException {
+        exportIndexed(clustering, path, width, height, null);
+    }
+
+    /**
+     * Save on the filesystem as palette-indexed PNG a segmentation of an image, compressing it in parallel
+     * @param clustering segmentation, with at most 256 clusters
+     * @param path path of the file in the filesystem
+     * @param width width of the image
+     * @param height height of the image
+     * @param pool pool on which the image is compressed, null for the sequential compression
+     * @throws IOException if an error occurs writing the file
+     * @throws NullPointerException if the clustering is null
+     * @throws IllegalArgumentException if the clustering doesn't have width*height points or has more than 256 clusters
+     */
+    public static void exportIndexed(Clustering clustering, String path, int width, int height, ForkJoinPool pool) throws IOException, NullPointerException, IllegalArgumentException {
+        if (clustering == null) {
+            throw new NullPointerException("Clustering can't be null");
+        }
+        if (clustering.size() != width * height) {
+            throw new IllegalArgumentException("Clustering doesn't match the image size");
+        }
+        if (clustering.getK() > 256) {
+            throw new IllegalArgumentException("Palette can't have more than 256 colours");
+        }
+
+        byte[] palette = new byte[3 * clustering.getK()];
+        for (int c = 0; c < clustering.getK(); c++) {
+            Color color = toColor(clustering.getCentroid(c));
+            palette[3 * c] = (byte) color.getRed();
+            palette[3 * c + 1] = (byte) color.getGreen();
+            palette[3 * c + 2] = (byte) color.getBlue();
+        }
+
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(path))) {
+            PngWriter.writeIndexed(out, width, height, palette, clustering.getLabelArray(), pool);
+        }
+    }
+
+    /**
+     * Reads a row of an image as colours 0xRRGGBB. The common layouts of the decoded images (interleaved bytes, as
+     * TYPE_3BYTE_BGR and TYPE_4BYTE_ABGR, and packed ints, as TYPE_INT_RGB and TYPE_INT_ARGB) are read directly from
+     * the data buffer, the others through getRGB
+     * @param img image
+     * @param y index of the row, in [0, height)
+     * @param row array where the colours are stored
+     * @param start index of the row array where the first colour is stored (width elements are stored)
+     */
+    static void readRow(BufferedImage img, int y, int[] row, int start) {
+        int width = img.getWidth();
+        WritableRaster raster = img.getRaster();
+        ColorModel model = img.getColorModel();
+        SampleModel sampleModel = raster.getSampleModel();
+        DataBuffer buffer = raster.getDataBuffer();
+        boolean sRGB = model.getColorSpace().isCS_sRGB() && model.getNumColorComponents() == 3 && !model.isAlphaPremultiplied();
+        int rasterX = -raster.getSampleModelTranslateX();
+        int rasterY = y - raster.getSampleModelTranslateY();
+
+        if (sRGB && buffer instanceof DataBufferByte && sampleModel instanceof PixelInterleavedSampleModel
+                && model instanceof ComponentColorModel && model.getComponentSize(0) == 8) {
+            PixelInterleavedSampleModel interleaved = (PixelInterleavedSampleModel) sampleModel;
+            byte[] data = ((DataBufferByte) buffer).getData();
+            int[] bandOffsets = interleaved.getBandOffsets();
+            int pixelStride = interleaved.getPixelStride();
+            int offset = buffer.getOffset() + rasterY * interleaved.getScanlineStride() + rasterX * pixelStride;
+            int r = offset + bandOffsets[0], g = offset + bandOffsets[1], b = offset + bandOffsets[2];
+            for (int x = 0; x < width; x++, r += pixelStride, g += pixelStride, b += pixelStride) {
+                row[start + x] = (data[r] & 0xFF) << 16 | (data[g] & 0xFF) << 8 | (data[b] & 0xFF);
+            }
+        } else if (sRGB && buffer instanceof DataBufferInt && sampleModel instanceof SinglePixelPackedSampleModel
+                && model instanceof DirectColorModel && ((DirectColorModel) model).getRedMask() == 0xFF0000
+                && ((DirectColorModel) model).getGreenMask() == 0xFF00 && ((DirectColorModel) model).getBlueMask() == 0xFF) {
+            int[] data = ((DataBufferInt) buffer).getData();
+            int offset = buffer.getOffset() + rasterY * ((SinglePixelPackedSampleModel) sampleModel).getScanlineStride() + rasterX;
+            for (int x = 0; x < width; x++) {
+                row[start + x] = data[offset + x] & 0xFFFFFF;
+            }
+        } else {
+            img.getRGB(0, y, width, 1, row, start, width);
+            for (int x = start; x < start + width; x++) {
+                row[x] &= 0xFFFFFF;
+            }
+        }
+    }
+
+    /**
+     * Converts the center of a cluster of colours to the colour
+     * @param center center in the RGB space
+     * @return colour
+     */
+    private static Color toColor(Point center) {
+        float r = (float)((int) center.getCoordinate(1))/255;
+        float g = (float)((int) center.getCoordinate(2))/255;
+        float b = (float)((int) center.getCoordinate(3))/255;
+        return new Color((r > 1 ? 1 : r), (g > 1 ? 1 : g), (b > 1 ? 1 : b));     // due floating-point arithmetic sometimes can be > 1
+            // cannot throw exception because a center of a cluster of RGBPixel has certainly 3 dimensions
+    }
 }
@@ -0,0 +1,41 @@
+import jdk.jfr.*;
+
+/**
+ * JFR event of an iteration of a k-means clusterization (its duration is the one of the iteration). It is recorded
+ * only when enabled in the recording, e.g. with -XX:StartFlightRecording or the "kmeans.Iteration" setting
+ */
+@Name("kmeans.Iteration")
+@Label("K-Means Iteration")
+@Category("K-Means")
+@Description("Iteration of a k-means clusterization")
+final class IterationEvent extends Event {
+    @Label("k")
+    int k;
+
+    @Label("Run")
+    int run;
+
+    @Label("Iteration")
+    int iteration;
+
+    @Label("Assignment Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long assignmentTime;
+
+    @Label("Update Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long updateTime;
+
+    @Label("Reassignments")
+    int reassignments;
+
+    @Label("Inertia")
+    double inertia;
+
+    @Label("Max Centroid Shift")
+    float maxShift;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+}
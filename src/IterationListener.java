@@ -0,0 +1,22 @@
+/**
+ * Listener of the progress of the k-means clusterizations (see {@link KMeans#setIterationListener(IterationListener)}).
+ * The runs of a multi-start clusterization call it concurrently, so it must be thread-safe
+ */
+@FunctionalInterface
+public interface IterationListener {
+    /**
+     * Called at the end of every iteration
+     * @param stats statistics of the iteration
+     */
+    void iterationCompleted(IterationStats stats);
+
+    /**
+     * Called when the iterations of a clusterization (or of a run of a multi-start clusterization) stop
+     * @param k number of clusters
+     * @param run index of the run (0 if the clusterization is not multi-start)
+     * @param iterations number of iterations
+     * @param reason reason of the stop
+     * @param seedingTime time spent to choose the initial centroids, in nanoseconds
+     */
+    default void clusterizationCompleted(int k, int run, int iterations, StopReason reason, long seedingTime) { }
+}
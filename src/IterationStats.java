@@ -0,0 +1,143 @@
+import net.jcip.annotations.Immutable;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Represents the statistics of an iteration of a k-means clusterization
+ */
+@Immutable
+public final class IterationStats {
+    /**
+     * Bean that measures the memory allocated by the threads, null if the JVM doesn't support it
+     */
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocationsBean();
+
+    private final int k, run, iteration;
+    private final long assignmentTime, updateTime;
+    private final int reassignments;
+    private final double inertia;
+    private final float maxShift;
+    private final long allocatedBytes;
+
+    /**
+     * Constructor
+     * @param k number of clusters
+     * @param run index of the run (0 if the clusterization is not multi-start)
+     * @param iteration index of the iteration (1-indexed)
+     * @param assignmentTime time of the assignment of the points, in nanoseconds
+     * @param updateTime time of the computation of the new centroids, in nanoseconds
+     * @param reassignments number of points that have changed cluster
+     * @param inertia inertia of the assignment
+     * @param maxShift maximum change of a coordinate of a centroid
+     * @param allocatedBytes bytes allocated by the calling thread during the iteration, -1 if not measured
+     */
+    IterationStats(int k, int run, int iteration, long assignmentTime, long updateTime, int reassignments, double inertia, float maxShift, long allocatedBytes) {
+        this.k = k;
+        this.run = run;
+        this.iteration = iteration;
+        this.assignmentTime = assignmentTime;
+        this.updateTime = updateTime;
+        this.reassignments = reassignments;
+        this.inertia = inertia;
+        this.maxShift = maxShift;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * @return number of clusters
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * @return index of the run of a multi-start clusterization (0 if it is not multi-start)
+     */
+    public int getRun() {
+        return run;
+    }
+
+    /**
+     * @return index of the iteration (1-indexed)
+     */
+    public int getIteration() {
+        return iteration;
+    }
+
+    /**
+     * @return time of the assignment of the points to the centroids, in nanoseconds
+     */
+    public long getAssignmentTime() {
+        return assignmentTime;
+    }
+
+    /**
+     * @return time of the computation of the new centroids, in nanoseconds
+     */
+    public long getUpdateTime() {
+        return updateTime;
+    }
+
+    /**
+     * @return time of the iteration, in nanoseconds
+     */
+    public long getTime() {
+        return assignmentTime + updateTime;
+    }
+
+    /**
+     * @return number of points that have changed cluster (all the points at the first iteration)
+     */
+    public int getReassignments() {
+        return reassignments;
+    }
+
+    /**
+     * Get the inertia of the assignment, in the space of the distance metric, with respect to the centroids of the
+     * beginning of the iteration
+     * @return inertia
+     */
+    public double getInertia() {
+        return inertia;
+    }
+
+    /**
+     * @return maximum change of a coordinate of a centroid, the one compared with the tolerance
+     */
+    public float getMaxShift() {
+        return maxShift;
+    }
+
+    /**
+     * @return bytes allocated by the thread that runs the clusterization during the iteration (not by the threads of
+     * the pool), -1 if the JVM doesn't measure them
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "k=" + k + " run=" + run + " iteration=" + iteration + " assignment=" + assignmentTime / 1e6 + "ms update=" + updateTime / 1e6 +
+                "ms reassignments=" + reassignments + " inertia=" + inertia + " maxShift=" + maxShift + " allocated=" + allocatedBytes + "B";
+    }
+
+    /**
+     * @return bytes allocated so far by the current thread, -1 if the JVM doesn't measure them
+     */
+    static long allocatedBytes() {
+        return (ALLOCATIONS == null) ? -1 : ALLOCATIONS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * @return bean that measures the memory allocated by the threads, null if the JVM doesn't support it
+     */
+    private static com.sun.management.ThreadMXBean allocationsBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            return (com.sun.management.ThreadMXBean) bean;
+        }
+        return null;
+    }
+}
@@ -1,4 +1,9 @@
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import jdk.jfr.EventType;
 
 import static java.lang.Math.abs;
 
@@ -6,12 +11,299 @@ import static java.lang.Math.abs;
  * For k-Means clusterization
  * @param <T> subclass of Point
  */
-public final class KMeans<T extends Point> {
+public final class KMeans<T extends Point> implements AutoCloseable {
     /**
-     * Maximum change of a centroid (in every direction) to be considered unchanged
+     * Default maximum change of a centroid (in every direction) to be considered unchanged
      */
     public static final float tolerance = 0.005F;
 
+    /**
+     * Type of the JFR event of the iterations, to know whether a recording has enabled it
+     */
+    private static final EventType ITERATION_EVENT = EventType.getEventType(IterationEvent.class);
+
+    /**
+     * Pool on which the iterations are executed, null for the sequential execution
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * True if the pool has been created by this object, that has to shut it down
+     */
+    private final boolean ownsPool;
+
+    /**
+     * Strategy of assignment of the points to the centroids
+     */
+    private AssignmentStrategy assignmentStrategy = AssignmentStrategy.BRUTE_FORCE;
+
+    /**
+     * Strategy of choice of the initial centroids
+     */
+    private SeedingStrategy seedingStrategy = SeedingStrategy.FARTHEST_POINT;
+
+    /**
+     * Distance with which the points are assigned to the centroids
+     */
+    private DistanceMetric distanceMetric = DistanceMetric.EUCLIDEAN;
+
+    /**
+     * Seed of the random choices of the seeding strategy
+     */
+    private long seed = 0;
+
+    /**
+     * Relative excess of inertia over the best run beyond which a run of a multi-start clusterization is cancelled
+     */
+    private double cancelThreshold = 0.05;
+
+    /**
+     * True if a sweep starts the clusterization of every k from the one of the previous k
+     */
+    private boolean warmStart = true;
+
+    /**
+     * Number of points on which a sweep estimates the silhouette coefficient, 0 to not estimate it
+     */
+    private int silhouetteSampleSize = 2000;
+
+    /**
+     * Maximum change of a centroid (in every direction) to be considered unchanged
+     */
+    private float centroidTolerance = tolerance;
+
+    /**
+     * Maximum number of iterations
+     */
+    private int maxIterations = Integer.MAX_VALUE;
+
+    /**
+     * Relative change of the inertia under which the iterations stop, 0 to not consider it
+     */
+    private double inertiaTolerance = 0;
+
+    /**
+     * Fraction of the points that change cluster under which the iterations stop, 0 to not consider it
+     */
+    private double reassignmentTolerance = 0;
+
+    /**
+     * Listener of the iterations, null if there is none
+     */
+    private IterationListener iterationListener = null;
+
+    /**
+     * Constructor for the sequential clusterization
+     */
+    public KMeans() {
+        this.pool = null;
+        this.ownsPool = false;
+    }
+
+    /**
+     * Constructor for the parallel clusterization on a dedicated pool, shut down by {@link #close()}
+     * @param parallelism number of worker threads (1 for the sequential clusterization)
+     * @throws IllegalArgumentException if parallelism is < 1
+     */
+    public KMeans(int parallelism) throws IllegalArgumentException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.pool = (parallelism == 1) ? null : new ForkJoinPool(parallelism);
+        this.ownsPool = pool != null;
+    }
+
+    /**
+     * Constructor for the parallel clusterization on a given pool, that remains of the caller (close doesn't shut it
+     * down)
+     * @param pool pool on which the iterations are executed
+     * @throws NullPointerException if the pool is null
+     */
+    public KMeans(final ForkJoinPool pool) throws NullPointerException {
+        if (pool == null) {
+            throw new NullPointerException("Pool can't be null");
+        }
+        this.pool = pool;
+        this.ownsPool = false;
+    }
+
+    /**
+     * Shuts down the dedicated pool created by the constructor with the parallelism, if any: after it, the parallel
+     * clusterizations are rejected. It has no effect on a sequential object or on a pool given by the caller
+     */
+    @Override
+    public void close() {
+        if (ownsPool) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @return strategy of assignment of the points to the centroids
+     */
+    public AssignmentStrategy getAssignmentStrategy() {
+        return assignmentStrategy;
+    }
+
+    /**
+     * Sets the strategy of assignment of the points to the centroids. All the strategies produce the same clusterization
+     * @param assignmentStrategy strategy
+     * @throws NullPointerException if the strategy is null
+     */
+    public void setAssignmentStrategy(final AssignmentStrategy assignmentStrategy) throws NullPointerException {
+        if (assignmentStrategy == null) {
+            throw new NullPointerException("Assignment strategy can't be null");
+        }
+        this.assignmentStrategy = assignmentStrategy;
+    }
+
+    /**
+     * @return strategy of choice of the initial centroids
+     */
+    public SeedingStrategy getSeedingStrategy() {
+        return seedingStrategy;
+    }
+
+    /**
+     * Sets the strategy of choice of the initial centroids
+     * @param seedingStrategy strategy
+     * @throws NullPointerException if the strategy is null
+     */
+    public void setSeedingStrategy(final SeedingStrategy seedingStrategy) throws NullPointerException {
+        if (seedingStrategy == null) {
+            throw new NullPointerException("Seeding strategy can't be null");
+        }
+        this.seedingStrategy = seedingStrategy;
+    }
+
+    /**
+     * @return distance with which the points are assigned to the centroids
+     */
+    public DistanceMetric getDistanceMetric() {
+        return distanceMetric;
+    }
+
+    /**
+     * Sets the distance with which the points are assigned to the centroids (see {@link DistanceMetric}). The seeding
+     * strategies use the euclidean distance, in the transformed space for the metrics that transform the points.
+     * Whatever the metric, the centroids of the resulting clusterization are in the space of the input points (for
+     * COSINE and CIELAB the means of the input points of every cluster) and its inertia is the euclidean one, so the
+     * clusterizations with different metrics can be compared. MANHATTAN ignores the Hamerly and kd-tree strategies
+     * @param distanceMetric metric
+     * @throws NullPointerException if the metric is null
+     */
+    public void setDistanceMetric(final DistanceMetric distanceMetric) throws NullPointerException {
+        if (distanceMetric == null) {
+            throw new NullPointerException("Distance metric can't be null");
+        }
+        this.distanceMetric = distanceMetric;
+    }
+
+    /**
+     * Sets the seed of the random choices of the seeding strategy, so that the clusterization is reproducible
+     * @param seed seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets when a run of a multi-start clusterization is cancelled: when, after MIN_RUN_ITERATIONS iterations, its
+     * inertia exceeds by more than this fraction the lowest inertia of the other runs at the same iteration (the last
+     * one for the runs that have already stopped)
+     * @param cancelThreshold threshold, non-negative (POSITIVE_INFINITY to never cancel a run)
+     * @throws IllegalArgumentException if the threshold is negative
+     */
+    public void setCancelThreshold(double cancelThreshold) throws IllegalArgumentException {
+        if (!(cancelThreshold >= 0)) {
+            throw new IllegalArgumentException("Cancel threshold can't be negative");
+        }
+        this.cancelThreshold = cancelThreshold;
+    }
+
+    /**
+     * Sets the maximum change of a centroid (in every direction) to be considered unchanged: the iterations stop when
+     * no centroid changes more than it
+     * @param tolerance tolerance, non-negative (default {@link #tolerance})
+     * @throws IllegalArgumentException if the tolerance is negative
+     */
+    public void setTolerance(float tolerance) throws IllegalArgumentException {
+        if (!(tolerance >= 0)) {
+            throw new IllegalArgumentException("Tolerance can't be negative");
+        }
+        this.centroidTolerance = tolerance;
+    }
+
+    /**
+     * Sets the maximum number of iterations of a clusterization, after which the iterations stop even if the centroids
+     * are still changing
+     * @param maxIterations maximum number of iterations (default Integer.MAX_VALUE)
+     * @throws IllegalArgumentException if max iterations is < 1
+     */
+    public void setMaxIterations(int maxIterations) throws IllegalArgumentException {
+        if (maxIterations < 1) {
+            throw new IllegalArgumentException("Max iterations must be positive");
+        }
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Sets the relative change of the inertia between two iterations under which the iterations stop
+     * @param inertiaTolerance tolerance, non-negative (default 0, that doesn't stop the iterations)
+     * @throws IllegalArgumentException if the tolerance is negative
+     */
+    public void setInertiaTolerance(double inertiaTolerance) throws IllegalArgumentException {
+        if (!(inertiaTolerance >= 0)) {
+            throw new IllegalArgumentException("Tolerance can't be negative");
+        }
+        this.inertiaTolerance = inertiaTolerance;
+    }
+
+    /**
+     * Sets the fraction of the points that change cluster in an iteration under which the iterations stop
+     * @param reassignmentTolerance tolerance, in [0, 1] (default 0, that doesn't stop the iterations)
+     * @throws IllegalArgumentException if the tolerance is not in [0, 1]
+     */
+    public void setReassignmentTolerance(double reassignmentTolerance) throws IllegalArgumentException {
+        if (!(reassignmentTolerance >= 0 && reassignmentTolerance <= 1)) {
+            throw new IllegalArgumentException("Tolerance must be in [0, 1]");
+        }
+        this.reassignmentTolerance = reassignmentTolerance;
+    }
+
+    /**
+     * Sets the listener of the iterations, that receives the statistics of every iteration and the reason of the stop
+     * of every clusterization (see also {@link ConvergenceRecorder}). Independently of it, the same statistics are
+     * recorded as the JFR events "kmeans.Iteration" and "kmeans.Clusterization" when a recording enables them
+     * @param iterationListener listener, null to remove it
+     */
+    public void setIterationListener(final IterationListener iterationListener) {
+        this.iterationListener = iterationListener;
+    }
+
+    /**
+     * Sets how a sweep starts the clusterization of every k after the first one: from the centroids of the previous k
+     * plus the new centroids that the seeding strategy chooses given them (default), that usually needs less iterations,
+     * or from the same centroids of {@link #clusterize(int, Dataset)}
+     * @param warmStart true to start from the previous k
+     */
+    public void setWarmStart(boolean warmStart) {
+        this.warmStart = warmStart;
+    }
+
+    /**
+     * Sets the number of points, sampled at random, on which a sweep estimates the silhouette coefficient of every
+     * clusterization. Its cost grows with the square of the sample size
+     * @param silhouetteSampleSize sample size (default 2000), 0 to not estimate the coefficient
+     * @throws IllegalArgumentException if the sample size is negative
+     */
+    public void setSilhouetteSampleSize(int silhouetteSampleSize) throws IllegalArgumentException {
+        if (silhouetteSampleSize < 0) {
+            throw new IllegalArgumentException("Sample size can't be negative");
+        }
+        this.silhouetteSampleSize = silhouetteSampleSize;
+    }
+
     /**
      * Performs the k-means clusterization
      * @param k number of clusters
@@ -34,29 +326,42 @@ public final class KMeans<T extends Point> {
             clusters.add(new Cluster<T>(data));
             return clusters;
         }
-        T[] points = data.toArray();
-
-        Point[] centroids = initialCentroids(k, points);
-        Integer[] clusterization = new Integer[numPoints];
-        boolean stop = false;
-
-        while (!stop) {
-            updateClusters(centroids, points, clusterization);
-            Point[] newCentroids = newCentroids(points, clusterization, k);
+        return toClusters(data, clusterize(k, new ColumnarDataset(data)));
+    }
 
-            if(checkStop(centroids, newCentroids)) {
-                stop = true;
-            } else {
-                centroids = newCentroids;
-            }
+    /**
+     * Performs the multi-start k-means clusterization (see {@link #clusterize(int, Dataset, int)})
+     * @param k number of clusters
+     * @param data points to be clusterized
+     * @param runs number of runs
+     * @return clusters of the run with the lowest inertia
+     * @throws IllegalArgumentException if k or runs are < 1 or if there aren't enough points (<k)
+     * @throws NullPointerException if input data is null
+     */
+    public ArrayList<Cluster<T>> clusterize(int k, final SetOfPoints<T> data, int runs) throws IllegalArgumentException, NullPointerException {
+        if(data == null) {
+            throw new NullPointerException("Input data can't be null");
         }
+        return toClusters(data, clusterize(k, new ColumnarDataset(data), runs));
+    }
+
+    /**
+     * Splits a set of points in clusters according to the clusterization of its points
+     * @param data points
+     * @param clustering clusterization of the points, in the same order
+     * @param <T> subclass of Point
+     * @return clusters
+     */
+    static <T extends Point> ArrayList<Cluster<T>> toClusters(final SetOfPoints<T> data, final Clustering clustering) {
+        int k = clustering.getK();
+        T[] points = data.toArray();
 
         ArrayList<Cluster<T>> clusters = new ArrayList<>();
         for (int j = 0; j < k; j++) {
             clusters.add(j, new Cluster<>(data.getDomain()));
         }
         for (int i = 0; i < points.length; i++) {
-            clusters.get(clusterization[i]).add(points[i]);
+            clusters.get(clustering.getLabel(i)).add(points[i]);
                 // cannot throws exception because the domain of all clusters is the same from which the data belongs to
         }
 
@@ -64,140 +369,616 @@ public final class KMeans<T extends Point> {
     }
 
     /**
-     * Checks the stop condition based on the unchange (under a certain tolerance) of centroids position
-     * @param oldCentroids old centroids
-     * @param newCentroids new centroids
-     * @return true if have to stop
+     * Performs the k-means clusterization of a dataset, without materializing its points
+     * @param k number of clusters
+     * @param data points to be clusterized
+     * @return clusterization
+     * @throws IllegalArgumentException if k is < 1, if there aren't enough points (<k) or if the distance metric is not
+     * defined for their dimension
+     * @throws NullPointerException if input data is null
      */
-    private boolean checkStop(final Point[] oldCentroids, final Point[] newCentroids) {
-        for (int k = 0; k < oldCentroids.length; k++) {
-            float[] oldCentroid = oldCentroids[k].getCoordinates();
-            float[] newCentroid = newCentroids[k].getCoordinates();
-            for (int i = 0; i < oldCentroid.length; i++) {
-                if (abs(oldCentroid[i] - newCentroid[i]) > KMeans.tolerance) {
-                    return false;
-                }
+    public Clustering clusterize(int k, final Dataset data) throws IllegalArgumentException, NullPointerException {
+        if(data == null) {
+            throw new NullPointerException("Input data can't be null");
+        }
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+
+        int numPoints = data.size();
+        if (numPoints < k) {
+            throw new IllegalArgumentException("Not enough points for this k (k=" + k + ")");
+        }
+
+        Dataset space = distanceMetric.transform(data, pool);
+        KdTree tree = kdTree(space);
+        long start = System.nanoTime();
+        float[] centroids = flatten(Seeding.initialCentroids(seedingStrategy, k, space, seed, pool));
+        return toInputSpace(data, space, run(k, space, tree, centroids, pool, null, 0, System.nanoTime() - start));
+    }
+
+    /**
+     * Performs the multi-start k-means clusterization of a dataset: it makes several runs with different seeds (the
+     * first one is the same of {@link #clusterize(int, Dataset)}, the farthest-point seeding of the others starts from
+     * a random point) and returns the one with the lowest inertia. The runs are executed concurrently on the pool of
+     * this object (each one sequentially), or one after the other without it, and share the dataset.
+     * A run whose inertia falls clearly behind the others (see {@link #setCancelThreshold(double)}) is cancelled, so the
+     * restarts cost little more than a single run; as the cancellation depends on the progress of the concurrent runs,
+     * a parallel clusterization is reproducible only without cancellation
+     * @param k number of clusters
+     * @param data points to be clusterized
+     * @param runs number of runs
+     * @return clusterization with the lowest inertia (in the space of the distance metric)
+     * @throws IllegalArgumentException if k or runs are < 1, if there aren't enough points (<k) or if the distance
+     * metric is not defined for their dimension
+     * @throws NullPointerException if input data is null
+     */
+    public Clustering clusterize(int k, final Dataset data, int runs) throws IllegalArgumentException, NullPointerException {
+        if (runs < 1) {
+            throw new IllegalArgumentException("Runs must be positive");
+        }
+        if (runs == 1) {
+            return clusterize(k, data);
+        }
+        if(data == null) {
+            throw new NullPointerException("Input data can't be null");
+        }
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+        if (data.size() < k) {
+            throw new IllegalArgumentException("Not enough points for this k (k=" + k + ")");
+        }
+
+        Dataset space = distanceMetric.transform(data, pool);
+        KdTree tree = kdTree(space);
+        Race race = new Race(runs, cancelThreshold);
+        Clustering[] results = new Clustering[runs];
+        SliceAction.run(runs, r -> {
+            long start = System.nanoTime();
+            float[] centroids = flatten(Seeding.initialCentroids(seedingStrategy, k, space, seed + r, null, r > 0));
+            results[r] = run(k, space, tree, centroids, null, race, r, System.nanoTime() - start);
+        }, pool);
+
+        Clustering best = null;
+        for (Clustering result : results) {
+            if (result != null && (best == null || result.getInertia() < best.getInertia())) {
+                best = result;
             }
         }
-        return true;
+        if (best == null) {
+            // the inertia of the Lloyd iterations never grows, so the run with the lowest one is never cancelled: all
+            // the runs can be cancelled only by the rounding errors
+            long start = System.nanoTime();
+            float[] centroids = flatten(Seeding.initialCentroids(seedingStrategy, k, space, seed, pool));
+            best = run(k, space, tree, centroids, pool, null, 0, System.nanoTime() - start);
+        }
+        return toInputSpace(data, space, best);
     }
 
     /**
-     * Assigns every points to a cluster. It returns the clusterization in the third parameter
-     * @param centroids centroids of clusters
-     * @param points points to be assigned
-     * @param clusterization clusterization
+     * Performs the k-means clusterization of a dataset for several values of k (see {@link #sweep(int[], Dataset, Consumer)})
+     * @param ks values of k
+     * @param data points to be clusterized
+     * @return inertia, silhouette coefficient and computation time of every k
+     * @throws IllegalArgumentException if there are no values, a value is < 1 or there aren't enough points (<k)
+     * @throws NullPointerException if the values or input data are null
      */
-    private void updateClusters(final Point[] centroids, final Point[] points, Integer[] clusterization) {
-        for (int p = 0; p < points.length; p++) {
-            float minDistance = Float.POSITIVE_INFINITY;
-            Integer nearestCentroid = null;
+    public Sweep sweep(final int[] ks, final Dataset data) throws IllegalArgumentException, NullPointerException {
+        return sweep(ks, data, null);
+    }
 
-            for (int c = 0; c < centroids.length; c++) {
-                float distance = Point.getSquaredEuclideanDistance(centroids[c], points[p]);
-                    // cannot throws exception because we ensure that centroids and points wer all not null and of the same dimension
-                if (distance < minDistance) {
-                    minDistance = distance;
-                    nearestCentroid = c;
-                }
+    /**
+     * Performs the k-means clusterization of a dataset for several values of k, in increasing order, reusing the work
+     * among them: the clusterization of a k starts from the one of the previous k (see {@link #setWarmStart(boolean)});
+     * otherwise, if the seeding strategy chooses the centroids one after the other, the centroids are chosen only once
+     * for the greatest k, and every smaller k uses the first ones (its time includes only the choice of these ones).
+     * The silhouette coefficient is estimated on the same sample of points for all the values
+     * @param ks values of k (duplicates are ignored)
+     * @param data points to be clusterized
+     * @param consumer consumer of the clusterization of every k, called before the next one is computed so that only one
+     *                 at a time is in memory; null to not use the clusterizations
+     * @return inertia, silhouette coefficient and computation time of every k
+     * @throws IllegalArgumentException if there are no values, a value is < 1 or there aren't enough points (<k)
+     * @throws NullPointerException if the values or input data are null
+     */
+    public Sweep sweep(final int[] ks, final Dataset data, final Consumer<Clustering> consumer) throws IllegalArgumentException, NullPointerException {
+        if (ks == null || data == null) {
+            throw new NullPointerException("Values of k and input data can't be null");
+        }
+        int[] sorted = Arrays.stream(ks).sorted().distinct().toArray();
+        if (sorted.length == 0) {
+            throw new IllegalArgumentException("At least a value of k is needed");
+        }
+        if (sorted[0] < 1) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+        int numPoints = data.size();
+        int maxK = sorted[sorted.length - 1];
+        if (numPoints < maxK) {
+            throw new IllegalArgumentException("Not enough points for this k (k=" + maxK + ")");
+        }
+
+        Dataset space = distanceMetric.transform(data, pool);
+        KdTree tree = kdTree(space);
+        Silhouette silhouette = (silhouetteSampleSize > 0) ? new Silhouette(space, silhouetteSampleSize, seed) : null;
+        double[] inertia = new double[sorted.length];
+        double[] silhouettes = new double[sorted.length];
+        long[] times = new long[sorted.length];
+        float[][] seeds = null;     // centroids for the greatest k, whose first ones are those of every smaller k
+        long[] seedingTimes = null;     // time taken to choose every prefix of the seeds
+        if (!warmStart && Seeding.isIncremental(seedingStrategy) && maxK < numPoints) {
+            seedingTimes = new long[maxK];
+            seeds = Seeding.initialCentroids(seedingStrategy, maxK, space, seed, pool, seedingTimes);
+        }
+        Clustering previous = null;
+        for (int i = 0; i < sorted.length; i++) {
+            int k = sorted[i];
+            long start = System.nanoTime();
+            float[][] initialCentroids;
+            long seedingTime;
+            if (seeds != null) {
+                initialCentroids = Arrays.copyOf(seeds, k);
+                seedingTime = seedingTimes[k - 1];
+                    // every k is charged with the choice of its own centroids, as if it had chosen them alone
+            } else {
+                initialCentroids = (warmStart && previous != null && k < numPoints)
+                        ? Seeding.extendCentroids(seedingStrategy, previous, k, space, seed + k, pool)
+                        : Seeding.initialCentroids(seedingStrategy, k, space, seed, pool);
+                seedingTime = System.nanoTime() - start;
+            }
+            long iterationsStart = System.nanoTime();
+            previous = run(k, space, tree, flatten(initialCentroids), pool, null, 0, seedingTime);
+            Clustering clustering = toInputSpace(data, space, previous);
+            times[i] = seedingTime + System.nanoTime() - iterationsStart;
+
+            inertia[i] = clustering.getInertia();
+            silhouettes[i] = (silhouette == null) ? Double.NaN : silhouette.of(previous);
+            if (consumer != null) {
+                consumer.accept(clustering);
             }
-            clusterization[p] = nearestCentroid;
         }
+        return new Sweep(sorted, inertia, silhouettes, times);
     }
 
     /**
-     * Calculates the new centroids based on the updated clusterization
-     * @param points points
-     * @param clusterization clusterization
+     * Executes the Lloyd iterations from some initial centroids until they converge
      * @param k number of clusters
-     * @return new centroids
+     * @param data points to be clusterized
+     * @param tree kd-tree of the points for the filtering assignment, null for the other strategies
+     * @param centroids initial centroids (flattened), updated in place
+     * @param pool pool on which the iterations are executed, null for the sequential execution
+     * @param race race of the runs of a multi-start clusterization, null for a single run
+     * @param run index of the run in the race
+     * @param seedingTime time spent to choose the initial centroids, in nanoseconds
+     * @return clusterization, null if the run is cancelled
      */
-    private Point[] newCentroids(final Point[] points, final Integer[] clusterization, int k) {
-        int dimension = points[0].getDimension();
-        float[][] sum = new float[k][dimension];
-        int[] clustersSize = new int[k];
-        for (int i = 0; i < points.length; i++) {
+    private Clustering run(int k, final Dataset data, final KdTree tree, final float[] centroids, final ForkJoinPool pool, final Race race, int run, long seedingTime) {
+        int numPoints = data.size();
+        int dimension = data.getDomain().getDimension();
+        float[] newCentroids = new float[k * dimension];
+        int[] clusterization = new int[numPoints];
+        boolean manhattan = distanceMetric == DistanceMetric.MANHATTAN;
+        HamerlyBounds bounds = (assignmentStrategy == AssignmentStrategy.HAMERLY && !manhattan) ? new HamerlyBounds(numPoints, k, dimension) : null;
+        KdTree.Filter filter = (tree != null && !manhattan) ? tree.new Filter(k) : null;
+        UpdateTask task = new UpdateTask(centroids, data, clusterization, k, 0, numPoints, pool != null, bounds, manhattan, filter != null);
+        Medians medians = manhattan ? new Medians(data, k, pool) : null;
+        IterationListener listener = iterationListener;
+        boolean recorded = ITERATION_EVENT.isEnabled();
+            // checked once per run: creating an event at every iteration would allocate also when nothing records it
+        boolean instrumented = listener != null || recorded;
+        ClusterizationEvent clusterizationEvent = new ClusterizationEvent();
+        clusterizationEvent.begin();
+        double previousInertia = Double.NaN;
+        StopReason reason = null;
+        int iteration = 0;
+
+        while (reason == null) {
+            iteration++;
+            IterationEvent event = recorded ? new IterationEvent() : null;
+            if (event != null) {
+                event.begin();
+            }
+            long allocated = instrumented ? IterationStats.allocatedBytes() : -1;
+
+            long start = System.nanoTime();
+            if (bounds != null) {
+                bounds.prepare(centroids);
+            }
+            int filterReassignments = (filter != null) ? filter.assign(centroids, clusterization, pool) : 0;
+            invoke(task, pool);
+            long assigned = System.nanoTime();
+            updateCentroids(task, centroids, newCentroids);
+            if (medians != null) {
+                medians.update(clusterization, newCentroids);
+            } else {
+                distanceMetric.updateCentroids(newCentroids, dimension);
+            }
+            float maxShift = maxShift(centroids, newCentroids);
+            long updated = System.nanoTime();
+            int reassignments = (iteration == 1) ? numPoints : (filter != null) ? filterReassignments : task.reassignments;
+
+            if (race != null && race.isBehind(run, iteration, task.inertia)) {
+                reason = StopReason.CANCELLED;
+            } else if (maxShift <= centroidTolerance) {
+                reason = StopReason.CENTROIDS_CONVERGED;
+            } else if (iteration > 1 && reassignments < reassignmentTolerance * numPoints) {
+                reason = StopReason.REASSIGNMENTS_CONVERGED;
+            } else if (iteration > 1 && abs(previousInertia - task.inertia) < inertiaTolerance * previousInertia) {
+                reason = StopReason.INERTIA_CONVERGED;
+            } else if (iteration >= maxIterations) {
+                reason = StopReason.MAX_ITERATIONS;
+            } else {
+                System.arraycopy(newCentroids, 0, centroids, 0, centroids.length);
+                    // the tasks keep reading the same buffer
+            }
+            previousInertia = task.inertia;
+
+            if (instrumented) {
+                allocated = (allocated < 0) ? -1 : IterationStats.allocatedBytes() - allocated;
+                if (event != null && event.shouldCommit()) {
+                    event.k = k;
+                    event.run = run;
+                    event.iteration = iteration;
+                    event.assignmentTime = assigned - start;
+                    event.updateTime = updated - assigned;
+                    event.reassignments = reassignments;
+                    event.inertia = task.inertia;
+                    event.maxShift = maxShift;
+                    event.allocatedBytes = allocated;
+                    event.commit();
+                }
+                if (listener != null) {
+                    listener.iterationCompleted(new IterationStats(k, run, iteration, assigned - start, updated - assigned, reassignments, task.inertia, maxShift, allocated));
+                }
+            }
+        }
+
+        if (clusterizationEvent.shouldCommit()) {
+            clusterizationEvent.k = k;
+            clusterizationEvent.points = numPoints;
+            clusterizationEvent.run = run;
+            clusterizationEvent.iterations = iteration;
+            clusterizationEvent.stopReason = reason.name();
+            clusterizationEvent.seedingTime = seedingTime;
+            clusterizationEvent.commit();
+        }
+        if (race != null && reason != StopReason.CANCELLED) {
+            race.stop(run);
+        }
+        if (listener != null) {
+            listener.clusterizationCompleted(k, run, iteration, reason, seedingTime);
+        }
+        if (reason == StopReason.CANCELLED) {
+            return null;
+        }
+
+        return toClustering(data, centroids, clusterization);
+    }
+
+    /**
+     * Builds the kd-tree of the points if the assignment strategy needs it
+     * @param data points to be clusterized (in the space of the distance metric)
+     * @return kd-tree, null if the strategy is not KD_TREE or the metric is MANHATTAN
+     */
+    private KdTree kdTree(final Dataset data) {
+        return (assignmentStrategy == AssignmentStrategy.KD_TREE && distanceMetric != DistanceMetric.MANHATTAN) ? new KdTree(data, pool) : null;
+    }
+
+    /**
+     * Expresses a clusterization of the transformed points in the space of the input points: the centroid of every
+     * cluster becomes the (weighted) mean of its input points (the mean of all the points if it is empty)
+     * @param data input points
+     * @param space points in the space of the distance metric
+     * @param clustering clusterization of the transformed points
+     * @return clusterization of the input points, with the same labels
+     */
+    private static Clustering toInputSpace(final Dataset data, final Dataset space, final Clustering clustering) {
+        if (space == data) {
+            return clustering;
+        }
+        int k = clustering.getK();
+        int dimension = data.getDomain().getDimension();
+        int[] labels = clustering.getLabels();
+        double[] sum = new double[k * dimension];
+        double[] clustersWeight = new double[k];
+        double[] totalSum = new double[dimension];
+        double totalWeight = 0;
+        for (int p = 0; p < labels.length; p++) {
+            double weight = data.getWeight(p);
+            for (int j = 0, offset = labels[p] * dimension; j < dimension; j++) {
+                sum[offset + j] += weight * data.getValue(p, j);
+                totalSum[j] += weight * data.getValue(p, j);
+            }
+            clustersWeight[labels[p]] += weight;
+            totalWeight += weight;
+        }
+
+        float[] centroids = new float[k * dimension];
+        for (int c = 0, offset = 0; c < k; c++, offset += dimension) {
             for (int j = 0; j < dimension; j++) {
-                sum[clusterization[i]][j] += points[i].getCoordinate(j+1);
-                    // cannot throws exception because all point has the same dimension and we respect it
+                centroids[offset + j] = (float) ((clustersWeight[c] == 0) ? totalSum[j] / totalWeight : sum[offset + j] / clustersWeight[c]);
             }
-            clustersSize[clusterization[i]]++;
         }
+        return toClustering(data, centroids, labels);
+    }
 
-        Point[] centroids = new Point[k];
-        for (int w = 0; w < k; w++) {
-            float[] coordinate = new float[dimension];
+    /**
+     * Assigns every point of a dataset to the nearest centroid of a clusterization, e.g. a clusterization of a
+     * {@link Coreset} or of a sample of the dataset, with the distance metric of the clusterizations
+     * @param clustering clusterization whose centroids are used
+     * @param data points to be assigned
+     * @return clusterization of the points, with the same centroids
+     * @throws NullPointerException if the clusterization or the dataset are null
+     * @throws IllegalArgumentException if the dimension of the dataset is not the one of the centroids, or the
+     *                                  distance metric is not defined for it
+     */
+    public Clustering assign(final Clustering clustering, final Dataset data) throws NullPointerException, IllegalArgumentException {
+        if (clustering == null || data == null) {
+            throw new NullPointerException("Clustering and input data can't be null");
+        }
+        float[][] centroids = new float[clustering.getK()][];
+        for (int c = 0; c < centroids.length; c++) {
+            centroids[c] = clustering.getCentroid(c).getCoordinates();
+        }
+        if (centroids[0].length != data.getDomain().getDimension()) {
+            throw new IllegalArgumentException("Incompatible dimension");
+        }
+        float[] flatCentroids = flatten(centroids);
+        Dataset space = distanceMetric.transform(data, pool);
+        float[] spaceCentroids = (space == data) ? flatCentroids : transform(flatCentroids, data.getDomain());
+
+        int[] clusterization = new int[data.size()];
+        invoke(new UpdateTask(spaceCentroids, space, clusterization, centroids.length, 0, data.size(), pool != null, null, distanceMetric == DistanceMetric.MANHATTAN), pool);
+        return toClustering(data, flatCentroids, clusterization);
+    }
+
+    /**
+     * Transforms some centroids in the space of the distance metric, as the points are transformed
+     * @param centroids centroids (flattened), in the space of the input points
+     * @param domain domain of the input points
+     * @return transformed centroids (flattened)
+     */
+    private float[] transform(final float[] centroids, final Domain domain) {
+        int dimension = domain.getDimension();
+        int k = centroids.length / dimension;
+        ColumnarDataset points = new ColumnarDataset(domain, k);
+        float[][] columns = points.getColumns();
+        for (int c = 0; c < k; c++) {
+            for (int j = 0; j < dimension; j++) {
+                columns[j][c] = centroids[c * dimension + j];
+            }
+        }
+        Dataset space = distanceMetric.transform(points, null);
+        float[] transformed = new float[centroids.length];
+        for (int c = 0; c < k; c++) {
             for (int j = 0; j < dimension; j++) {
-                coordinate[j] = sum[w][j]/clustersSize[w];
+                transformed[c * dimension + j] = space.getValue(c, j);
             }
-            centroids[w] = new Point(coordinate);
+        }
+        return transformed;
+    }
+
+    /**
+     * Assigns every point of a dataset to the nearest centroid
+     * @param centroids centroids (flattened), that are not modified
+     * @param data points to be assigned
+     * @param pool pool on which the points are assigned, null for the sequential execution
+     * @return clusterization
+     */
+    static Clustering assign(final float[] centroids, final Dataset data, final ForkJoinPool pool) {
+        int k = centroids.length / data.getDomain().getDimension();
+        int[] clusterization = new int[data.size()];
+        invoke(new UpdateTask(centroids, data, clusterization, k, 0, data.size(), pool != null, null), pool);
+        return toClustering(data, centroids, clusterization);
+    }
+
+    /**
+     * Builds the result of a clusterization, computing its (weighted) inertia
+     * @param data clusterized points
+     * @param centroids centroids (flattened)
+     * @param clusterization cluster of every point
+     * @return clusterization
+     */
+    static Clustering toClustering(final Dataset data, final float[] centroids, final int[] clusterization) {
+        int dimension = data.getDomain().getDimension();
+        int k = centroids.length / dimension;
+        float[][] finalCentroids = new float[k][];
+        for (int c = 0; c < k; c++) {
+            finalCentroids[c] = Arrays.copyOfRange(centroids, c * dimension, (c + 1) * dimension);
         }
 
-        return centroids;
+        double inertia = 0;
+        for (int p = 0; p < clusterization.length; p++) {
+            inertia += data.getWeight(p) * squaredDistance(data, p, finalCentroids[clusterization[p]]);
+        }
+        return new Clustering(finalCentroids, clusterization, inertia);
     }
 
     /**
-     * Determines the initial centroids by picking them randomly
-     * @param k number of centroids
-     * @param points points
-     * @return centroids
+     * Calculates the maximum change of a coordinate of the centroids, that is compared with the tolerance to stop
+     * @param oldCentroids old centroids (flattened)
+     * @param newCentroids new centroids (flattened)
+     * @return maximum change
      */
-    private Point[] randomInitialCentroids(int k, final ArrayList<T> points) {
-        Point[] centroids = new Point[k];
-        int numPoints = points.size();
-        Random r = new Random();
-        for (int i = 0; i < k; i++) {
-            int index = r.nextInt(numPoints);
-            centroids[i] = new Point(points.get(index));
+    private static float maxShift(final float[] oldCentroids, final float[] newCentroids) {
+        float maxShift = 0;
+        for (int i = 0; i < oldCentroids.length; i++) {
+            maxShift = Math.max(maxShift, abs(oldCentroids[i] - newCentroids[i]));
         }
-        return centroids;
+        return maxShift;
     }
 
     /**
-     * Determines the initial centroids by picking the first point in the list and then picking iteratively
-     * the point that maximize the minimum distance from previous centroids
-     * @param k number of centroids
-     * @param points points
-     * @return centroids
+     * Calculates the new centroids based on the clusterization of an executed tree of tasks.
+     * The task writes the clusterization in its own buffer, and the new centroids are returned in the third parameter.
+     * The points are split in slices: every slice is assigned by a task that collects its own per-cluster sums and
+     * sizes, and these partial results are merged once per iteration. Slices and merge order don't depend on the
+     * pool, so the parallel and the sequential execution produce the same clusterization.
+     * A cluster that remains empty keeps its previous centroid
+     * @param task root of the tree of tasks, built on the centroids buffer and already executed
+     * @param centroids centroids of clusters (flattened)
+     * @param newCentroids buffer for the new centroids (flattened)
      */
-    private Point[] initialCentroids(int k, final Point[] points) {
-        int numPoints = points.length;
-        if (numPoints == k) {
-            Point[] centroids = new Point[k];
-            for (int i = 0; i < k; i++) {
-                centroids[i] = new Point(points[i]);
+    private static void updateCentroids(final UpdateTask task, final float[] centroids, float[] newCentroids) {
+        int k = task.clustersWeight.length;
+        int dimension = centroids.length / k;
+        for (int w = 0, offset = 0; w < k; w++, offset += dimension) {
+            double weight = task.clustersWeight[w];
+            for (int j = 0; j < dimension; j++) {
+                newCentroids[offset + j] = (weight == 0) ? centroids[offset + j] : (float) (task.sum[offset + j]/weight);
             }
+        }
+    }
 
-            return centroids;
+    /**
+     * Executes (again) a tree of update tasks
+     * @param task root of the tree
+     * @param pool pool on which the tasks are executed, null for the sequential execution
+     */
+    static void invoke(final UpdateTask task, final ForkJoinPool pool) {
+        task.reinitialize();
+        if (pool != null) {
+            pool.invoke(task);
+        } else {
+            task.invoke();  // without pool the task never forks, so it is entirely executed on the current thread
         }
+    }
 
-        Point[] centroids = new Point[k];
-        // Random r = new Random();
-        // int firstCentroidIndex = r.nextInt(numPoints);
-        int firstCentroidIndex = 0;
-        centroids[0] = new Point(points[firstCentroidIndex]);
+    /**
+     * Flattens the centroids in a single array: the j-th coordinate of the c-th centroid is at c*dimension + j
+     * @param centroids centroids
+     * @return flattened centroids
+     */
+    static float[] flatten(final float[][] centroids) {
+        int dimension = centroids[0].length;
+        float[] flat = new float[centroids.length * dimension];
+        for (int c = 0; c < centroids.length; c++) {
+            System.arraycopy(centroids[c], 0, flat, c * dimension, dimension);
+        }
+        return flat;
+    }
 
-        for (int i = 1; i < k; i++) {
-            float maxMinDistance = 0;
-            int newCentroidIndex = 0;
+    /**
+     * Copies the coordinates of a point of a dataset
+     * @param data dataset
+     * @param index index of the point
+     * @return coordinates
+     */
+    static float[] copyPoint(final Dataset data, int index) {
+        float[] coordinates = new float[data.getDomain().getDimension()];
+        for (int j = 0; j < coordinates.length; j++) {
+            coordinates[j] = data.getValue(index, j);
+        }
+        return coordinates;
+    }
 
-            for (int p = 0; p < numPoints; p++) {
-                float minDistance = Float.POSITIVE_INFINITY;
-                for (int c = 0; c < i; c++) {
-                    float distance = Point.getSquaredEuclideanDistance(points[p], centroids[c]);
-                        // cannot throws exception because SetOfPoint ensure that all the points are not null and of the same dimension
-                    if (distance < minDistance) {
-                        minDistance = distance;
+    /**
+     * Calculates the squared euclidean distance between a point of a dataset and a centroid
+     * @param data dataset
+     * @param index index of the point
+     * @param centroid coordinates of the centroid
+     * @return distance
+     */
+    static float squaredDistance(final Dataset data, int index, final float[] centroid) {
+        float squareSum = 0;
+        for (int j = 0; j < centroid.length; j++) {
+            float difference = data.getValue(index, j) - centroid[j];
+            squareSum += difference*difference;
+        }
+        return squareSum;
+    }
+
+    /**
+     * Shared progress of the runs of a multi-start clusterization
+     */
+    private static final class Race {
+        /**
+         * Minimum number of iterations of a run before it can be cancelled
+         */
+        private static final int MIN_RUN_ITERATIONS = 3;
+
+        /**
+         * Inertia of every run at every iteration (the inertia at the iteration i is at i-1), replaced by a larger
+         * copy when full
+         */
+        private final AtomicReferenceArray<double[]> inertia;
+
+        /**
+         * Number of iterations of every run whose inertia is known, -1 if the run is cancelled
+         */
+        private final AtomicIntegerArray iterations;
+
+        /**
+         * 1 for the runs that have stopped without being cancelled: their inertia doesn't change any more
+         */
+        private final AtomicIntegerArray stopped;
+
+        private final double cancelThreshold;
+
+        /**
+         * Constructor
+         * @param runs number of runs
+         * @param cancelThreshold relative excess of inertia over the best run beyond which a run is cancelled
+         */
+        Race(int runs, double cancelThreshold) {
+            this.inertia = new AtomicReferenceArray<>(runs);
+            for (int r = 0; r < runs; r++) {
+                inertia.set(r, new double[16]);
+            }
+            this.iterations = new AtomicIntegerArray(runs);
+            this.stopped = new AtomicIntegerArray(runs);
+            this.cancelThreshold = cancelThreshold;
+        }
+
+        /**
+         * Publishes the inertia of a run and checks if the run has to be cancelled: it is compared with the inertia
+         * of the other runs at the same iteration, or with the last one of the runs that have stopped before, so a run
+         * is never compared with a run that is further ahead. The runs that haven't reached the iteration yet are
+         * ignored
+         * @param run index of the run
+         * @param iteration number of iterations of the run
+         * @param runInertia inertia of the run at this iteration
+         * @return true if the run has to be cancelled
+         */
+        boolean isBehind(int run, int iteration, double runInertia) {
+            double[] values = inertia.get(run);
+            if (iteration > values.length) {
+                values = Arrays.copyOf(values, 2 * values.length);
+                inertia.set(run, values);
+            }
+            values[iteration - 1] = runInertia;
+            iterations.set(run, iteration);   // publishes the value
+            if (iteration < MIN_RUN_ITERATIONS) {
+                return false;
+            }
+
+            double best = Double.POSITIVE_INFINITY;
+            for (int r = 0; r < iterations.length(); r++) {
+                if (r != run) {
+                    boolean done = stopped.get(r) == 1;   // read first, so the number of iterations is the final one
+                    int known = iterations.get(r);
+                    if (known >= iteration) {
+                        best = Math.min(best, inertia.get(r)[iteration - 1]);
+                    } else if (done && known > 0) {
+                        best = Math.min(best, inertia.get(r)[known - 1]);
                     }
                 }
-                if (minDistance > maxMinDistance) {
-                    maxMinDistance = minDistance;
-                    newCentroidIndex = p;
-                }
             }
-            centroids[i] = new Point(points[newCentroidIndex]);
+            if (runInertia > best * (1 + cancelThreshold)) {
+                iterations.set(run, -1);
+                return true;
+            }
+            return false;
         }
 
-        return centroids;
+        /**
+         * Marks a run as stopped without being cancelled, so that its last inertia is compared with the later
+         * iterations of the other runs
+         * @param run index of the run
+         */
+        void stop(int run) {
+            stopped.set(run, 1);
+        }
     }
 }
@@ -0,0 +1,398 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+
+/**
+ * Kd-tree of the points used by the filtering assignment (Kanungo et al., 2002): every node is a box that contains a
+ * range of the points, and at every iteration the candidate centroids of a box are filtered, discarding the ones that
+ * are farther than another candidate from every point of the box. When a single candidate is left, all the points of
+ * the box are assigned to it without computing any distance; in the leaves, the points compute the distances only from
+ * the remaining candidates.
+ * The tree is balanced: every node is split at the median of its widest dimension, so the nodes are stored in heap
+ * order (the children of the node i are 2i+1 and 2i+2) and the range of a node halves the one of its parent. The
+ * coordinates of the points are copied in the order of the tree, so the tree needs d+1 values for every point.
+ * The tree depends only on the points, so it is built once per clusterization and shared by all the runs
+ */
+final class KdTree {
+    /**
+     * Maximum number of points of a leaf
+     */
+    static final int LEAF_SIZE = 32;
+
+    /**
+     * Depth of the roots of the subtrees that are built and filtered in parallel (up to 64 subtrees)
+     */
+    private static final int PARALLEL_DEPTH = 6;
+
+    private final int numPoints, dimension;
+
+    /**
+     * Depth of the leaves (all the leaves have the same depth)
+     */
+    private final int depth;
+
+    /**
+     * Index of the point at every position of the tree
+     */
+    private final int[] order;
+
+    /**
+     * Coordinates of the points in the order of the tree: the j-th coordinate of the point at position i is at
+     * i*dimension + j
+     */
+    private final float[] coordinates;
+
+    /**
+     * Bounds of the box of every node, flattened as the coordinates
+     */
+    private final float[] lower, upper;
+
+    /**
+     * Node, first position (inclusive) and last position (exclusive) of the roots of the subtrees
+     */
+    private final int[] subtrees, subtreeFrom, subtreeTo;
+
+    /**
+     * Constructor. It builds the tree
+     * @param data points
+     * @param pool pool on which the tree is built, null for the sequential execution
+     * @throws IllegalArgumentException if the dataset has too many coordinates for the tree
+     */
+    KdTree(final Dataset data, final ForkJoinPool pool) throws IllegalArgumentException {
+        this.numPoints = data.size();
+        this.dimension = data.getDomain().getDimension();
+        if ((long) numPoints * dimension > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many coordinates for the kd-tree");
+        }
+        int levels = 0;
+        while (((numPoints - 1) >> levels) + 1 > LEAF_SIZE) {     // ceil(numPoints / 2^levels)
+            levels++;
+        }
+        this.depth = levels;
+        int numNodes = (2 << depth) - 1;
+        this.lower = new float[numNodes * dimension];
+        this.upper = new float[numNodes * dimension];
+
+        this.order = new int[numPoints];
+        this.coordinates = new float[numPoints * dimension];
+        int slices = (numPoints + UpdateTask.SLICE_SIZE - 1) / UpdateTask.SLICE_SIZE;
+        SliceAction.run(slices, s -> {
+            for (int p = s * UpdateTask.SLICE_SIZE, to = Math.min(p + UpdateTask.SLICE_SIZE, numPoints); p < to; p++) {
+                order[p] = p;
+                for (int j = 0; j < dimension; j++) {
+                    coordinates[p * dimension + j] = data.getValue(p, j);
+                }
+            }
+        }, pool);
+
+        int subtreeDepth = Math.min(depth, PARALLEL_DEPTH);
+        this.subtrees = new int[1 << subtreeDepth];
+        this.subtreeFrom = new int[subtrees.length];
+        this.subtreeTo = new int[subtrees.length];
+        build(0, 0, numPoints, 0, subtreeDepth);
+        SliceAction.run(subtrees.length, s -> build(subtrees[s], subtreeFrom[s], subtreeTo[s], subtreeDepth, depth + 1), pool);
+    }
+
+    /**
+     * Builds the nodes of a subtree down to a depth, splitting every node at the median of its widest dimension. The
+     * nodes at the final depth (if it is not beyond the leaves) are recorded as roots of the subtrees
+     * @param node node
+     * @param from first position of the node (inclusive)
+     * @param to last position of the node (exclusive)
+     * @param level depth of the node
+     * @param stopLevel depth at which the construction stops
+     */
+    private void build(int node, int from, int to, int level, int stopLevel) {
+        if (level == stopLevel) {
+            int s = node - ((1 << level) - 1);
+            subtrees[s] = node;
+            subtreeFrom[s] = from;
+            subtreeTo[s] = to;
+            return;
+        }
+
+        int offset = node * dimension;
+        Arrays.fill(lower, offset, offset + dimension, Float.POSITIVE_INFINITY);
+        Arrays.fill(upper, offset, offset + dimension, Float.NEGATIVE_INFINITY);
+        for (int i = from * dimension, end = to * dimension; i < end; i += dimension) {
+            for (int j = 0; j < dimension; j++) {
+                lower[offset + j] = Math.min(lower[offset + j], coordinates[i + j]);
+                upper[offset + j] = Math.max(upper[offset + j], coordinates[i + j]);
+            }
+        }
+        if (level == depth) {
+            return;
+        }
+
+        int widest = 0;
+        for (int j = 1; j < dimension; j++) {
+            if (upper[offset + j] - lower[offset + j] > upper[offset + widest] - lower[offset + widest]) {
+                widest = j;
+            }
+        }
+        int middle = (from + to) >>> 1;
+        select(from, to - 1, middle, widest);
+        build(2 * node + 1, from, middle, level + 1, stopLevel);
+        build(2 * node + 2, middle, to, level + 1, stopLevel);
+    }
+
+    /**
+     * Moves to a position the point that would be there if the points were sorted by a coordinate, with the points not
+     * greater before it and the points not smaller after it (Hoare's selection)
+     * @param low first position of the range (inclusive)
+     * @param high last position of the range (inclusive)
+     * @param position position to be filled
+     * @param j coordinate
+     */
+    private void select(int low, int high, int position, int j) {
+        while (low < high) {
+            float a = coordinates[low * dimension + j];
+            float b = coordinates[((low + high) >>> 1) * dimension + j];
+            float c = coordinates[high * dimension + j];
+            float pivot = Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));     // median of three
+            int i = low, h = high;
+            while (i <= h) {
+                while (coordinates[i * dimension + j] < pivot) {
+                    i++;
+                }
+                while (coordinates[h * dimension + j] > pivot) {
+                    h--;
+                }
+                if (i <= h) {
+                    swap(i, h);
+                    i++;
+                    h--;
+                }
+            }
+            if (position <= h) {
+                high = h;
+            } else if (position >= i) {
+                low = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Swaps two points of the tree
+     * @param first position of the first point
+     * @param second position of the second point
+     */
+    private void swap(int first, int second) {
+        int index = order[first];
+        order[first] = order[second];
+        order[second] = index;
+        for (int j = 0, a = first * dimension, b = second * dimension; j < dimension; j++, a++, b++) {
+            float value = coordinates[a];
+            coordinates[a] = coordinates[b];
+            coordinates[b] = value;
+        }
+    }
+
+    /**
+     * Filtering assignment of a clusterization: it holds the buffers of the candidates and the body of the subtrees,
+     * so that a sequential iteration doesn't allocate anything (a parallel one only creates the fork/join actions of
+     * the subtrees). Different filters of the same tree can be used concurrently
+     */
+    final class Filter {
+        private final int k;
+
+        /**
+         * Candidates of every level of every subtree, in increasing order: the candidates of the root of the subtree s
+         * are at s*(depth+2)*k, and the ones that remain after the filtering of a node are k positions after the ones
+         * of the node
+         */
+        private final int[] candidates;
+
+        /**
+         * Number of reassignments of every subtree
+         */
+        private final int[] reassignments;
+
+        /**
+         * Coordinates of the centre of the box under filtering, for every subtree
+         */
+        private final double[] centres;
+
+        /**
+         * Body of the assignment of a subtree, created once (a lambda capturing the arguments of assign would be
+         * created at every iteration)
+         */
+        private final IntConsumer assignSubtree;
+
+        /**
+         * Centroids (flattened) and cluster of every point of the running assignment
+         */
+        private float[] centroids;
+        private int[] clusterization;
+
+        /**
+         * Constructor
+         * @param k number of clusters
+         */
+        Filter(int k) {
+            this.k = k;
+            this.candidates = new int[subtrees.length * (depth + 2) * k];
+            this.reassignments = new int[subtrees.length];
+            this.centres = new double[subtrees.length * dimension];
+            this.assignSubtree = this::assignSubtree;
+        }
+
+        /**
+         * Assigns every point to the nearest centroid, with the same result of the brute force assignment (ties go to
+         * the centroid with the lower index)
+         * @param centroids centroids (flattened)
+         * @param clusterization cluster of every point, updated in place
+         * @param pool pool on which the subtrees are processed, null for the sequential execution
+         * @return number of points whose cluster has changed
+         */
+        int assign(final float[] centroids, final int[] clusterization, final ForkJoinPool pool) {
+            this.centroids = centroids;
+            this.clusterization = clusterization;
+            SliceAction.run(subtrees.length, assignSubtree, pool);
+            this.centroids = null;
+            this.clusterization = null;
+
+            int total = 0;
+            for (int count : reassignments) {
+                total += count;
+            }
+            return total;
+        }
+
+        /**
+         * Assigns the points of a subtree to the centroids of the running assignment
+         * @param s index of the subtree
+         */
+        private void assignSubtree(int s) {
+            int base = s * (depth + 2) * k;
+            for (int c = 0; c < k; c++) {
+                candidates[base + c] = c;
+            }
+            reassignments[s] = 0;
+            filter(s, subtrees[s], subtreeFrom[s], subtreeTo[s], base, k, centroids, clusterization);
+        }
+
+        /**
+         * Filters the candidates of a node and assigns its points
+         * @param s index of the subtree
+         * @param node node
+         * @param from first position of the node (inclusive)
+         * @param to last position of the node (exclusive)
+         * @param start index of the candidates of the node in the buffer
+         * @param count number of candidates of the node
+         * @param centroids centroids (flattened)
+         * @param clusterization cluster of every point
+         */
+        private void filter(int s, int node, int from, int to, int start, int count, final float[] centroids, final int[] clusterization) {
+            if (count > 1) {
+                count = prune(s, node, start, count, centroids);
+                start += k;
+            }
+            if (count == 1) {
+                int cluster = candidates[start];
+                for (int i = from; i < to; i++) {
+                    if (clusterization[order[i]] != cluster) {
+                        clusterization[order[i]] = cluster;
+                        reassignments[s]++;
+                    }
+                }
+            } else if (node >= (1 << depth) - 1) {
+                assignLeaf(s, from, to, start, count, centroids, clusterization);
+            } else {
+                int middle = (from + to) >>> 1;
+                filter(s, 2 * node + 1, from, middle, start, count, centroids, clusterization);
+                filter(s, 2 * node + 2, middle, to, start, count, centroids, clusterization);
+            }
+        }
+
+        /**
+         * Discards the candidates of a node that are farther than the candidate nearest to the centre of the box from
+         * every point of the box: the difference of their squared distances is linear, so its minimum is in the
+         * vertex of the box in the direction of the discarded candidate. A candidate is discarded only if the
+         * difference exceeds a relative margin (the one of the Hamerly assignment), larger than the rounding errors of
+         * the distances, so the result is the same of the brute force
+         * @param s index of the subtree
+         * @param node node
+         * @param start index of the candidates of the node in the buffer
+         * @param count number of candidates of the node
+         * @param centroids centroids (flattened)
+         * @return number of remaining candidates, stored k positions after the ones of the node, in the same order
+         */
+        private int prune(int s, int node, int start, int count, final float[] centroids) {
+            int box = node * dimension;
+            int centre = s * dimension;
+            for (int j = 0; j < dimension; j++) {
+                centres[centre + j] = ((double) lower[box + j] + upper[box + j]) / 2;
+            }
+            int nearest = candidates[start];
+            double minDistance = Double.POSITIVE_INFINITY;
+            for (int i = start; i < start + count; i++) {
+                double distance = 0;
+                for (int j = 0, offset = candidates[i] * dimension; j < dimension; j++) {
+                    double difference = centroids[offset + j] - centres[centre + j];
+                    distance += difference * difference;
+                }
+                if (distance < minDistance) {
+                    minDistance = distance;
+                    nearest = candidates[i];
+                }
+            }
+
+            int remaining = 0;
+            int nearestOffset = nearest * dimension;
+            for (int i = start; i < start + count; i++) {
+                int candidate = candidates[i];
+                if (candidate != nearest) {
+                    double difference = 0, farthest = 0;
+                    for (int j = 0, offset = candidate * dimension; j < dimension; j++) {
+                        double z = centroids[offset + j];
+                        double best = centroids[nearestOffset + j];
+                        double vertex = (z > best) ? upper[box + j] : lower[box + j];
+                        difference += (z - vertex) * (z - vertex) - (best - vertex) * (best - vertex);
+                        farthest += Math.max((z - lower[box + j]) * (z - lower[box + j]), (z - upper[box + j]) * (z - upper[box + j]));
+                        farthest += Math.max((best - lower[box + j]) * (best - lower[box + j]), (best - upper[box + j]) * (best - upper[box + j]));
+                    }
+                    if (difference > HamerlyBounds.MARGIN * farthest) {
+                        continue;
+                    }
+                }
+                candidates[start + k + remaining++] = candidate;
+            }
+            return remaining;
+        }
+
+        /**
+         * Assigns the points of a leaf to the nearest candidate, computing the distances as the brute force assignment
+         * @param s index of the subtree
+         * @param from first position of the leaf (inclusive)
+         * @param to last position of the leaf (exclusive)
+         * @param start index of the candidates in the buffer
+         * @param count number of candidates
+         * @param centroids centroids (flattened)
+         * @param clusterization cluster of every point
+         */
+        private void assignLeaf(int s, int from, int to, int start, int count, final float[] centroids, final int[] clusterization) {
+            for (int i = from, point = from * dimension; i < to; i++, point += dimension) {
+                float minDistance = Float.POSITIVE_INFINITY;
+                int nearestCentroid = 0;
+                for (int c = start; c < start + count; c++) {
+                    float distance = 0;
+                    for (int j = 0, offset = candidates[c] * dimension; j < dimension; j++) {
+                        float difference = centroids[offset + j] - coordinates[point + j];
+                        distance += difference*difference;
+                    }
+                    if (distance < minDistance) {
+                        minDistance = distance;
+                        nearestCentroid = candidates[c];
+                    }
+                }
+                if (clusterization[order[i]] != nearestCentroid) {
+                    clusterization[order[i]] = nearestCentroid;
+                    reassignments[s]++;
+                }
+            }
+        }
+    }
+}
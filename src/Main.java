@@ -1,96 +1,105 @@
-import java.awt.image.BufferedImage;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.util.ArrayList;
-
-public class Main {
-    /**
-     * Min value of K to test
-     */
-    private static final int K_MIN = 2;
-    /**
-     * Max value of K to test
-     */
-    private static final int K_MAX = 20;
-    /**
-     * Step on values of K
-     */
-    private static final int K_STEP = 6;
-
-    /**
-     * Image dimension to test: 4K, 5K or 6K
-     */
-    private static final String IMAGE_DIMENSION = "6K";
-    /**
-     * Number of image of each dimension to test (max 3)
-     */
-    private static final int IMAGE_QUANTITY = 3;
-
-    /**
-     * Number of times to test each image
-     */
-    private static final int REPETITIONS = 2;
-
-    public static void main(String[] args) {
-        try {
-            int[] keys = new int[K_MAX - K_MIN + 1];
-            float[] times = new float[K_MAX - K_MIN + 1];
-
-            KMeans<RGBPixel> kmeans = new KMeans<>();
-
-            for (int k = K_MIN; k <= K_MAX; k += K_STEP) {
-                long cumulativeTimesMillis = 0;
-                for (int imageIndex = 1; imageIndex <= IMAGE_QUANTITY; imageIndex++) {
-                    BufferedImage img = Image.load("src/image/" + IMAGE_DIMENSION + "-" + imageIndex + ".jpg");
-                    SetOfPoints<RGBPixel> data = Image.pixelize(img);
-                    int width = img.getWidth();
-                    int height = img.getHeight();
-                    img = null;     // to garbage collect previous result and avoid Heap Space Error
-
-                    ArrayList<Cluster<RGBPixel>> clusters = null;
-                    for (int i = 0; i < REPETITIONS; i++) {
-                        clusters = null;        // to garbage collect previous result and avoid Heap Space Error
-
-                        long startTimeMillis = System.currentTimeMillis();
-                        clusters = kmeans.clusterize(k, data);
-                        long endTimeMillis = System.currentTimeMillis();
-
-                        cumulativeTimesMillis += endTimeMillis - startTimeMillis;
-                        System.out.println("For k = " + k + " on image" + imageIndex + ", computation time is " + (endTimeMillis-startTimeMillis)/1000f + " seconds");
-                    }
-
-                    Image.export(clusters, "out/results/" + IMAGE_DIMENSION + "-" + imageIndex + "-quantized" + k + ".png", width, height);
-                }
-                float meanTimeSeconds = cumulativeTimesMillis / (1000f * REPETITIONS * IMAGE_QUANTITY);
-                keys[k - K_MIN] = k;
-                times[k - K_MIN] = meanTimeSeconds;
-                System.out.println("For k = " + k + ", MEAN computation time is " + meanTimeSeconds + " seconds");
-            }
-
-            saveTextFile(keys, times, "timesOf" + IMAGE_DIMENSION);
-
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
-
-    private static void saveTextFile(final int[] kList, final float[] timeList, String fileName) {
-        String path = "out/results/" + fileName + ".txt";
-        try {
-            File file = new File(path);
-            BufferedWriter output = new BufferedWriter(new FileWriter(file));
-            for (int k = 0; k < kList.length; k += K_STEP) {
-                output.write(Integer.toString(kList[k]));
-                output.write(" ");
-                output.write(Double.toString(timeList[k]));
-                output.write("\n");
-            }
-            output.close();
-        } catch ( IOException e ) {
-            e.printStackTrace();
-        }
-    }
-
-}
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+public class Main {
+    /**
+     * Min value of K to test
+     */
+    private static final int K_MIN = 2;
+    /**
+     * Max value of K to test
+     */
+    private static final int K_MAX = 20;
+    /**
+     * Step on values of K
+     */
+    private static final int K_STEP = 6;
+
+    /**
+     * Image dimension to test: 4K, 5K or 6K
+     */
+    private static final String IMAGE_DIMENSION = "6K";
+    /**
+     * Number of image of each dimension to test (max 3)
+     */
+    private static final int IMAGE_QUANTITY = 3;
+
+    /**
+     * Number of times to test each image
+     */
+    private static final int REPETITIONS = 2;
+
+    /**
+     * Number of threads used by the clusterization (1 for the sequential one)
+     */
+    private static final int PARALLELISM = 1;
+
+    public static void main(String[] args) {
+        try (KMeans<RGBPixel> kmeans = new KMeans<>(PARALLELISM)) {
+            int[] keys = new int[(K_MAX - K_MIN) / K_STEP + 1];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = K_MIN + i * K_STEP;
+            }
+            double[] cumulativeTimes = new double[keys.length];
+
+            kmeans.setWarmStart(false);     // every k starts from its own seeding, as in the independent runs of the baseline
+
+            for (int imageIndex = 1; imageIndex <= IMAGE_QUANTITY; imageIndex++) {
+                BufferedImage img = Image.load("src/image/" + IMAGE_DIMENSION + "-" + imageIndex + ".jpg");
+                Dataset data = Image.toDataset(img);
+                int width = img.getWidth();
+                int height = img.getHeight();
+                img = null;     // to garbage collect previous result and avoid Heap Space Error
+
+                for (int i = 0; i < REPETITIONS; i++) {
+                    String prefix = "out/results/" + IMAGE_DIMENSION + "-" + imageIndex + "-quantized";
+                    Sweep sweep = kmeans.sweep(keys, data, (i < REPETITIONS - 1) ? null : clustering -> {
+                        try {
+                            Image.export(clustering, prefix + clustering.getK() + ".png", width, height);
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    });
+
+                    for (int k = 0; k < sweep.size(); k++) {
+                        cumulativeTimes[k] += sweep.getTime(k);
+                        System.out.println("For k = " + sweep.getK(k) + " on image" + imageIndex + ", computation time is " + (float) sweep.getTime(k) + " seconds" +
+                                " (inertia " + sweep.getInertia(k) + ", silhouette " + (float) sweep.getSilhouette(k) + ")");
+                    }
+                }
+            }
+
+            float[] times = new float[keys.length];
+            for (int k = 0; k < keys.length; k++) {
+                times[k] = (float) (cumulativeTimes[k] / (REPETITIONS * IMAGE_QUANTITY));
+                System.out.println("For k = " + keys[k] + ", MEAN computation time is " + times[k] + " seconds");
+            }
+
+            saveTextFile(keys, times, "timesOf" + IMAGE_DIMENSION);
+
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void saveTextFile(final int[] kList, final float[] timeList, String fileName) {
+        String path = "out/results/" + fileName + ".txt";
+        try {
+            File file = new File(path);
+            BufferedWriter output = new BufferedWriter(new FileWriter(file));
+            for (int k = 0; k < kList.length; k++) {
+                output.write(Integer.toString(kList[k]));
+                output.write(" ");
+                output.write(Double.toString(timeList[k]));
+                output.write("\n");
+            }
+            output.close();
+        } catch ( IOException e ) {
+            e.printStackTrace();
+        }
+    }
+
+}
@@ -0,0 +1,162 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only dataset backed by a point file (see {@link PointFileWriter}) mapped in memory: opening it costs only the
+ * reading of the header, the values are read straight from the pages of the file, loaded on demand by the operating
+ * system and shared by all the processes that map the same file.
+ * As a mapping can't exceed 2 GB, every column is mapped in segments of 2^28 values
+ */
+public final class MappedDataset implements Dataset {
+    /**
+     * Base 2 logarithm of the number of values of a segment
+     */
+    private static final int SEGMENT_SHIFT = 28;
+    private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+    private final Domain domain;
+    private final int size;
+    private final ColumnType type;
+
+    /**
+     * Segments of every column: columns[j][s] holds the values of the j-th coordinate of the points of the s-th segment
+     */
+    private final ByteBuffer[][] columns;
+
+    /**
+     * Constructor
+     * @param domain domain of the points
+     * @param size number of points
+     * @param type type of the values
+     * @param columns segments of every column
+     */
+    private MappedDataset(final Domain domain, int size, final ColumnType type, final ByteBuffer[][] columns) {
+        this.domain = domain;
+        this.size = size;
+        this.type = type;
+        this.columns = columns;
+    }
+
+    /**
+     * Maps a point file in memory
+     * @param path path of the file in the filesystem
+     * @return dataset
+     * @throws IOException if an error occurs reading the file, or it is not a valid point file
+     * @throws NullPointerException if the path is null
+     */
+    public static MappedDataset open(String path) throws IOException, NullPointerException {
+        if (path == null) {
+            throw new NullPointerException("Path can't be null");
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(PointFileWriter.FIXED_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            read(channel, header, 0);
+            if (header.getInt() != PointFileWriter.MAGIC) {
+                throw new IOException("Not a point file");
+            }
+            if (header.getInt() != PointFileWriter.VERSION) {
+                throw new IOException("Unsupported version of the point file");
+            }
+            int dimension = header.getInt();
+            int typeIndex = header.getInt();
+            long size = header.getLong();
+            if (dimension < 0 || typeIndex < 0 || typeIndex >= ColumnType.values().length || size < 0 || size > Integer.MAX_VALUE) {
+                throw new IOException("Corrupted point file header");
+            }
+            ColumnType type = ColumnType.values()[typeIndex];
+
+            ByteBuffer bounds = ByteBuffer.allocate(8 * dimension).order(ByteOrder.LITTLE_ENDIAN);
+            read(channel, bounds, PointFileWriter.FIXED_HEADER_SIZE);
+            float[] lowerBounds = new float[dimension];
+            float[] upperBounds = new float[dimension];
+            for (int j = 0; j < dimension; j++) {
+                lowerBounds[j] = bounds.getFloat();
+            }
+            for (int j = 0; j < dimension; j++) {
+                upperBounds[j] = bounds.getFloat();
+            }
+            Domain domain;
+            try {
+                domain = Domain.of(lowerBounds, upperBounds);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Corrupted point file header", e);
+            }
+
+            long offset = PointFileWriter.headerSize(dimension);
+            long columnBytes = size * type.bytes;
+            if (channel.size() < offset + dimension * columnBytes) {
+                throw new IOException("Truncated point file");
+            }
+            int segments = (int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+            ByteBuffer[][] columns = new ByteBuffer[dimension][segments];
+            for (int j = 0; j < dimension; j++, offset += columnBytes) {
+                for (int s = 0; s < segments; s++) {
+                    long first = (long) s << SEGMENT_SHIFT;
+                    long values = Math.min(size - first, 1L << SEGMENT_SHIFT);
+                    columns[j][s] = channel.map(FileChannel.MapMode.READ_ONLY, offset + first * type.bytes, values * type.bytes)
+                            .order(ByteOrder.LITTLE_ENDIAN);
+                }
+            }
+            return new MappedDataset(domain, (int) size, type, columns);
+        }   // the mappings remain valid after the channel is closed
+    }
+
+    @Override
+    public Domain getDomain() {
+        return domain;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public float getValue(int index, int dimension) {
+        ByteBuffer segment = columns[dimension][index >>> SEGMENT_SHIFT];
+        int offset = index & SEGMENT_MASK;
+        return (type == ColumnType.FLOAT32) ? segment.getFloat(offset << 2) : segment.get(offset) & 0xFF;
+    }
+
+    /**
+     * @return type of the values of the columns
+     */
+    public ColumnType getColumnType() {
+        return type;
+    }
+
+    /**
+     * Copies the points in a set of points
+     * @return set of points, in the same order
+     * @throws IllegalArgumentException if a point of the file doesn't belong to its domain
+     */
+    public SetOfPoints<Point> toSetOfPoints() throws IllegalArgumentException {
+        SetOfPoints<Point> sop = new SetOfPoints<>(domain);
+        for (int p = 0; p < size; p++) {
+            sop.add(getPoint(p));
+        }
+        return sop;
+    }
+
+    /**
+     * Reads from a channel until a buffer is full
+     * @param channel channel
+     * @param buffer buffer
+     * @param position position of the channel where the reading starts
+     * @throws IOException if an error occurs reading, or the file ends before
+     */
+    private static void read(final FileChannel channel, final ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Truncated point file");
+            }
+            position += read;
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,131 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Computes the centroids of k-medians: the (weighted) median of every coordinate of the points of every cluster, that
+ * minimizes the sum of their Manhattan distances from the centroid.
+ * The points are grouped by cluster with a counting sort and the values of every cluster are sorted, so an update costs
+ * O(n log n) for every dimension; the clusters are processed in parallel on the pool. The buffers are allocated once
+ * per clusterization and reused at every iteration
+ */
+final class Medians {
+    private final Dataset data;
+    private final ForkJoinPool pool;
+    private final int k, dimension;
+
+    /**
+     * Indexes of the points, grouped by cluster
+     */
+    private final int[] order;
+
+    /**
+     * Position in order of the first point of every cluster, plus the number of points
+     */
+    private final int[] start;
+
+    /**
+     * Buffer of the values of the points, null if the points are weighted
+     */
+    private final float[] values;
+
+    /**
+     * Buffer of the values of the weighted points, each one with the index of its point, null if they are not weighted
+     */
+    private final long[] keys;
+
+    /**
+     * Constructor
+     * @param data points
+     * @param k number of clusters
+     * @param pool pool on which the clusters are processed, null for the sequential execution
+     */
+    Medians(final Dataset data, int k, final ForkJoinPool pool) {
+        this.data = data;
+        this.pool = pool;
+        this.k = k;
+        this.dimension = data.getDomain().getDimension();
+        int numPoints = data.size();
+        this.order = new int[numPoints];
+        this.start = new int[k + 1];
+
+        boolean weighted = false;
+        for (int p = 0; p < numPoints && !weighted; p++) {
+            weighted = data.getWeight(p) != 1;
+        }
+        this.values = weighted ? null : new float[numPoints];
+        this.keys = weighted ? new long[numPoints] : null;
+    }
+
+    /**
+     * Replaces the centroids of the non-empty clusters with the medians of their points
+     * @param clusterization cluster of every point
+     * @param centroids centroids (flattened), updated in place
+     */
+    void update(final int[] clusterization, final float[] centroids) {
+        Arrays.fill(start, 0);
+        for (int label : clusterization) {
+            start[label + 1]++;
+        }
+        for (int c = 0; c < k; c++) {
+            start[c + 1] += start[c];
+        }
+        int[] next = Arrays.copyOf(start, k);
+        for (int p = 0; p < clusterization.length; p++) {
+            order[next[clusterization[p]]++] = p;
+        }
+
+        SliceAction.run(k, c -> {
+            if (start[c] == start[c + 1]) {
+                return;     // an empty cluster keeps its centroid
+            }
+            for (int j = 0; j < dimension; j++) {
+                centroids[c * dimension + j] = (keys == null) ? median(start[c], start[c + 1], j) : weightedMedian(start[c], start[c + 1], j);
+            }
+        }, pool);
+    }
+
+    /**
+     * Computes the (lower) median of a coordinate of a cluster
+     * @param from first position of the cluster in order (inclusive)
+     * @param to last position of the cluster in order (exclusive)
+     * @param j coordinate
+     * @return median
+     */
+    private float median(int from, int to, int j) {
+        for (int i = from; i < to; i++) {
+            values[i] = data.getValue(order[i], j);
+        }
+        Arrays.sort(values, from, to);
+        return values[from + (to - from - 1) / 2];
+    }
+
+    /**
+     * Computes the (lower) weighted median of a coordinate of a cluster: the least value such that the points with a
+     * value not greater than it have at least half of the weight of the cluster
+     * @param from first position of the cluster in order (inclusive)
+     * @param to last position of the cluster in order (exclusive)
+     * @param j coordinate
+     * @return median
+     */
+    private float weightedMedian(int from, int to, int j) {
+        double total = 0;
+        for (int i = from; i < to; i++) {
+            int bits = Float.floatToIntBits(data.getValue(order[i], j));
+            bits ^= (bits >> 31) & 0x7FFFFFFF;      // the signed integers have the same order of the floats
+            keys[i] = ((long) bits << 32) | order[i];
+            total += data.getWeight(order[i]);
+        }
+        Arrays.sort(keys, from, to);
+
+        double cumulative = 0;
+        int i = from;
+        for (; i < to - 1; i++) {
+            cumulative += data.getWeight((int) keys[i]);
+            if (2 * cumulative >= total) {
+                break;
+            }
+        }
+        int bits = (int) (keys[i] >> 32);
+        return Float.intBitsToFloat(bits ^ ((bits >> 31) & 0x7FFFFFFF));
+    }
+}
@@ -0,0 +1,256 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * For mini-batch k-Means clusterization (Sculley, 2010): at every iteration the centroids are moved towards a small
+ * random batch of points instead of being recomputed from all the points, and a single full pass assigns all the points
+ * at the end. It is much faster than KMeans on large sets of points, at the price of a (usually small) higher inertia,
+ * that can be measured with {@link Clustering#getInertiaGap(Clustering)}
+ * @param <T> subclass of Point
+ */
+public final class MiniBatchKMeans<T extends Point> implements AutoCloseable {
+    /**
+     * Number of points of every batch
+     */
+    private final int batchSize;
+
+    /**
+     * Maximum number of iterations (batches)
+     */
+    private final int maxIterations;
+
+    /**
+     * Pool on which the final assignment is executed, null for the sequential execution
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Minimum learning rate of a centroid
+     */
+    private float minLearningRate = 0;
+
+    /**
+     * Strategy of choice of the initial centroids, applied to a random sample of batch size points
+     */
+    private SeedingStrategy seedingStrategy = SeedingStrategy.FARTHEST_POINT;
+
+    /**
+     * Seed of the seeding and of the sampling of the batches
+     */
+    private long seed = 0;
+
+    /**
+     * Maximum change of a centroid (in every direction) in a batch under which the iterations stop
+     */
+    private float tolerance = KMeans.tolerance;
+
+    /**
+     * Constructor for the sequential clusterization
+     * @param batchSize number of points of every batch
+     * @param maxIterations maximum number of iterations
+     * @throws IllegalArgumentException if batch size or max iterations are < 1
+     */
+    public MiniBatchKMeans(int batchSize, int maxIterations) throws IllegalArgumentException {
+        this(batchSize, maxIterations, 1);
+    }
+
+    /**
+     * Constructor for the clusterization with a parallel final assignment, on a dedicated pool shut down by
+     * {@link #close()}
+     * @param batchSize number of points of every batch
+     * @param maxIterations maximum number of iterations
+     * @param parallelism number of worker threads of the final assignment (1 for the sequential one)
+     * @throws IllegalArgumentException if batch size, max iterations or parallelism are < 1
+     */
+    public MiniBatchKMeans(int batchSize, int maxIterations, int parallelism) throws IllegalArgumentException {
+        if (batchSize < 1 || maxIterations < 1) {
+            throw new IllegalArgumentException("Batch size and max iterations must be positive");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.batchSize = batchSize;
+        this.maxIterations = maxIterations;
+        this.pool = (parallelism == 1) ? null : new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Shuts down the pool of the final assignment, if any: after it, the parallel clusterizations are rejected
+     */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Sets the minimum learning rate of the centroids. A centroid that has already received n points moves towards a
+     * new point by max(1/n, minimum learning rate): with 0 (default) every centroid is the running mean of its points,
+     * a higher rate lets the centroids forget the first batches. Weighted points count as many points as their weight
+     * @param minLearningRate minimum learning rate, in [0, 1]
+     * @throws IllegalArgumentException if the rate is not in [0, 1]
+     */
+    public void setMinLearningRate(float minLearningRate) throws IllegalArgumentException {
+        if (!(minLearningRate >= 0 && minLearningRate <= 1)) {
+            throw new IllegalArgumentException("Learning rate must be in [0, 1]");
+        }
+        this.minLearningRate = minLearningRate;
+    }
+
+    /**
+     * Sets the strategy of choice of the initial centroids, that is applied to a random sample of batch size points
+     * @param seedingStrategy strategy
+     * @throws NullPointerException if the strategy is null
+     */
+    public void setSeedingStrategy(final SeedingStrategy seedingStrategy) throws NullPointerException {
+        if (seedingStrategy == null) {
+            throw new NullPointerException("Seeding strategy can't be null");
+        }
+        this.seedingStrategy = seedingStrategy;
+    }
+
+    /**
+     * Sets the seed of the seeding and of the sampling of the batches, so that the clusterization is reproducible
+     * @param seed seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the maximum change of a centroid (in every direction) in a batch under which the iterations stop before max
+     * iterations
+     * @param tolerance tolerance, non-negative (default {@link KMeans#tolerance})
+     * @throws IllegalArgumentException if the tolerance is negative
+     */
+    public void setTolerance(float tolerance) throws IllegalArgumentException {
+        if (!(tolerance >= 0)) {
+            throw new IllegalArgumentException("Tolerance can't be negative");
+        }
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Performs the mini-batch k-means clusterization
+     * @param k number of clusters
+     * @param data points to be clusterized
+     * @return clusters
+     * @throws IllegalArgumentException if there aren't enough points (<k)
+     * @throws NullPointerException if input data is null
+     */
+    public ArrayList<Cluster<T>> clusterize(int k, final SetOfPoints<T> data) throws IllegalArgumentException, NullPointerException {
+        if(data == null) {
+            throw new NullPointerException("Input data can't be null");
+        }
+        return KMeans.toClusters(data, clusterize(k, new ColumnarDataset(data)));
+    }
+
+    /**
+     * Performs the mini-batch k-means clusterization of a dataset, without materializing its points
+     * @param k number of clusters
+     * @param data points to be clusterized
+     * @return clusterization
+     * @throws IllegalArgumentException if k is < 1 or if there aren't enough points (<k)
+     * @throws NullPointerException if input data is null
+     */
+    public Clustering clusterize(int k, final Dataset data) throws IllegalArgumentException, NullPointerException {
+        if(data == null) {
+            throw new NullPointerException("Input data can't be null");
+        }
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+
+        int numPoints = data.size();
+        if (numPoints < k) {
+            throw new IllegalArgumentException("Not enough points for this k (k=" + k + ")");
+        }
+
+        int dimension = data.getDomain().getDimension();
+        Random random = new Random(seed);
+        ColumnarDataset sample = sample(data, Math.min(numPoints, Math.max(k, batchSize)), random);
+        float[] centroids = KMeans.flatten(Seeding.initialCentroids(seedingStrategy, k, sample, seed, null));
+        double[] received = new double[k];
+        int[] batch = new int[batchSize];
+        int[] batchClusterization = new int[batchSize];
+
+        for (int iteration = 0; iteration < maxIterations; iteration++) {
+            for (int b = 0; b < batchSize; b++) {
+                batch[b] = random.nextInt(numPoints);
+                batchClusterization[b] = nearestCentroid(centroids, data, batch[b], k);
+            }
+
+            float maxChange = 0;
+            for (int b = 0; b < batchSize; b++) {
+                int c = batchClusterization[b];
+                double weight = data.getWeight(batch[b]);
+                received[c] += weight;
+                float rate = (float) Math.max(weight / received[c], minLearningRate);
+                for (int j = 0, offset = c * dimension; j < dimension; j++) {
+                    float change = rate * (data.getValue(batch[b], j) - centroids[offset + j]);
+                    centroids[offset + j] += change;
+                    maxChange = Math.max(maxChange, Math.abs(change));
+                }
+            }
+            if (maxChange <= tolerance) {
+                break;
+            }
+        }
+
+        return KMeans.assign(centroids, data, pool);
+    }
+
+    /**
+     * Finds the nearest centroid of a point
+     * @param centroids centroids (flattened)
+     * @param data points
+     * @param index index of the point
+     * @param k number of centroids
+     * @return index of the nearest centroid
+     */
+    private static int nearestCentroid(final float[] centroids, final Dataset data, int index, int k) {
+        int dimension = centroids.length / k;
+        float minDistance = Float.POSITIVE_INFINITY;
+        int nearestCentroid = 0;
+        for (int c = 0, offset = 0; c < k; c++, offset += dimension) {
+            float distance = 0;
+            for (int j = 0; j < dimension; j++) {
+                float difference = centroids[offset + j] - data.getValue(index, j);
+                distance += difference*difference;
+            }
+            if (distance < minDistance) {
+                minDistance = distance;
+                nearestCentroid = c;
+            }
+        }
+        return nearestCentroid;
+    }
+
+    /**
+     * Copies a random sample (without replacement, so that the seeding never gets the same point twice) of points: the
+     * indexes are shuffled by a partial Fisher-Yates shuffle, that keeps only the moved indexes
+     * @param data points
+     * @param size size of the sample, at most the number of points
+     * @param random generator
+     * @return sample
+     */
+    private static ColumnarDataset sample(final Dataset data, int size, final Random random) {
+        int numPoints = data.size();
+        int dimension = data.getDomain().getDimension();
+        ColumnarDataset sample = new ColumnarDataset(data.getDomain(), size);
+        HashMap<Integer, Integer> moved = new HashMap<>();     // index at every position that isn't its own
+        for (int i = 0; i < size; i++) {
+            int position = i + random.nextInt(numPoints - i);
+            int index = moved.getOrDefault(position, position);
+            moved.put(position, moved.getOrDefault(i, i));
+            for (int j = 0; j < dimension; j++) {
+                sample.setValue(i, j, data.getValue(index, j));
+                    // cannot throws exception because the value comes from the same domain
+            }
+        }
+        return sample;
+    }
+}
@@ -0,0 +1,419 @@
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.Collection;
+
+/**
+ * Online (sequential) k-means clusterization of an unbounded stream of points, that can be added one at a time or in
+ * batches. The first points are kept in a warm-up buffer and clusterized by KMeans to seed the centroids; then every
+ * new point is assigned to the nearest centroid and moves it by max(weight/n, minimum learning rate), where n is the
+ * weight received so far by the centroid (MacQueen's update), and is then discarded.
+ * The memory is fixed at (warm-up size + k) * dimension coordinates, however many points are added. Centroids and
+ * labels can be queried at any time
+ */
+@ThreadSafe
+public final class OnlineKMeans {
+    /**
+     * Default number of points of the warm-up buffer
+     */
+    public static final int DEFAULT_WARM_UP = 1 << 10;
+
+    private final Domain domain;
+    private final int k, dimension;
+
+    /**
+     * Centroids, flattened: the j-th coordinate of the c-th centroid is at c*dimension + j
+     */
+    private final float[] centroids;
+
+    /**
+     * Total weight of the points received by every centroid
+     */
+    private final double[] received;
+
+    /**
+     * Coordinates of the point under update
+     */
+    private final float[] point;
+
+    /**
+     * First points, null once the centroids are seeded
+     */
+    private WarmUp warmUp;
+
+    /**
+     * Number of points added
+     */
+    private long count = 0;
+
+    private float minLearningRate = 0;
+    private SeedingStrategy seedingStrategy = SeedingStrategy.FARTHEST_POINT;
+    private long seed = 0;
+
+    /**
+     * Constructor with a warm-up buffer of max(k, DEFAULT_WARM_UP) points
+     * @param domain domain to which the points belong
+     * @param k number of clusters
+     * @throws NullPointerException if the domain is null
+     * @throws IllegalArgumentException if k is < 1
+     */
+    public OnlineKMeans(final Domain domain, int k) throws NullPointerException, IllegalArgumentException {
+        this(domain, k, Math.max(k, DEFAULT_WARM_UP));
+    }
+
+    /**
+     * Constructor
+     * @param domain domain to which the points belong
+     * @param k number of clusters
+     * @param warmUp number of points of the warm-up buffer, from which the centroids are seeded
+     * @throws NullPointerException if the domain is null
+     * @throws IllegalArgumentException if k is < 1 or the warm-up is < k
+     */
+    public OnlineKMeans(final Domain domain, int k, int warmUp) throws NullPointerException, IllegalArgumentException {
+        if (domain == null) {
+            throw new NullPointerException("Domain can't be null");
+        }
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+        if (warmUp < k) {
+            throw new IllegalArgumentException("Warm-up must be at least k");
+        }
+        this.domain = domain;
+        this.k = k;
+        this.dimension = domain.getDimension();
+        this.centroids = new float[k * dimension];
+        this.received = new double[k];
+        this.point = new float[dimension];
+        this.warmUp = new WarmUp(domain, warmUp);
+    }
+
+    /**
+     * Sets the minimum learning rate of the centroids: with 0 (default) every centroid is the running mean of its
+     * points, a higher rate lets the centroids follow a drifting stream
+     * @param minLearningRate minimum learning rate, in [0, 1]
+     * @throws IllegalArgumentException if the rate is not in [0, 1]
+     */
+    public synchronized void setMinLearningRate(float minLearningRate) throws IllegalArgumentException {
+        if (!(minLearningRate >= 0 && minLearningRate <= 1)) {
+            throw new IllegalArgumentException("Learning rate must be in [0, 1]");
+        }
+        this.minLearningRate = minLearningRate;
+    }
+
+    /**
+     * Sets the strategy of choice of the initial centroids in the warm-up buffer. It has effect only before the
+     * centroids are seeded
+     * @param seedingStrategy strategy
+     * @throws NullPointerException if the strategy is null
+     */
+    public synchronized void setSeedingStrategy(final SeedingStrategy seedingStrategy) throws NullPointerException {
+        if (seedingStrategy == null) {
+            throw new NullPointerException("Seeding strategy can't be null");
+        }
+        this.seedingStrategy = seedingStrategy;
+    }
+
+    /**
+     * Sets the seed of the seeding. It has effect only before the centroids are seeded
+     * @param seed seed
+     */
+    public synchronized void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @return number of clusters
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * @return number of points added
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Adds a point to the stream
+     * @param point point
+     * @return cluster of the point, -1 if the centroids are not seeded yet
+     * @throws NullPointerException if the point is null
+     * @throws IllegalArgumentException if the point doesn't belong to the domain
+     */
+    public synchronized int add(final Point point) throws NullPointerException, IllegalArgumentException {
+        return add(point, 1);
+    }
+
+    /**
+     * Adds a weighted point to the stream, that counts as many points as its weight
+     * @param point point
+     * @param weight weight of the point
+     * @return cluster of the point, -1 if the centroids are not seeded yet
+     * @throws NullPointerException if the point is null
+     * @throws IllegalArgumentException if the point doesn't belong to the domain or the weight is not positive
+     */
+    public synchronized int add(final Point point, double weight) throws NullPointerException, IllegalArgumentException {
+        if (point == null) {
+            throw new NullPointerException("Point to add can't be null");
+        }
+        if (!domain.contains(point)) {
+            throw new IllegalArgumentException("Incompatible point");
+        }
+        if (!(weight > 0)) {
+            throw new IllegalArgumentException("Weight must be positive");
+        }
+        for (int j = 0; j < dimension; j++) {
+            this.point[j] = point.getCoordinate(j + 1);
+                // cannot throws exception because the point belongs to the domain
+        }
+        return update(weight);
+    }
+
+    /**
+     * Adds a batch of points to the stream, in order
+     * @param points points
+     * @throws NullPointerException if the collection or one of its points is null
+     * @throws IllegalArgumentException if a point doesn't belong to the domain (the previous ones are added anyway)
+     */
+    public synchronized void addAll(final Collection<? extends Point> points) throws NullPointerException, IllegalArgumentException {
+        for (Point p : points) {
+            add(p, 1);
+        }
+    }
+
+    /**
+     * Adds a batch of (possibly weighted) points to the stream, in order. The points with zero weight are skipped, as
+     * they don't move the centroids
+     * @param data points
+     * @throws NullPointerException if the dataset is null
+     * @throws IllegalArgumentException if the dataset doesn't belong to the domain, or a weight is negative or NaN (the
+     *                                  previous points are added anyway)
+     */
+    public synchronized void addAll(final Dataset data) throws NullPointerException, IllegalArgumentException {
+        if (data == null) {
+            throw new NullPointerException("Input data can't be null");
+        }
+        if (!domain.equals(data.getDomain())) {
+            throw new IllegalArgumentException("Incompatible domain");
+        }
+        for (int p = 0; p < data.size(); p++) {
+            double weight = data.getWeight(p);
+            if (weight == 0) {
+                continue;
+            }
+            if (!(weight > 0)) {
+                throw new IllegalArgumentException("Weight must be non-negative");
+            }
+            for (int j = 0; j < dimension; j++) {
+                point[j] = data.getValue(p, j);
+            }
+            update(weight);
+        }
+    }
+
+    /**
+     * Gets the current centroids. If the centroids are not seeded yet they are seeded now, with the points seen so far
+     * @return centroids
+     * @throws IllegalStateException if less than k points have been added
+     */
+    public synchronized Point[] getCentroids() throws IllegalStateException {
+        ensureSeeded();
+        Point[] points = new Point[k];
+        for (int c = 0; c < k; c++) {
+            float[] coordinates = new float[dimension];
+            System.arraycopy(centroids, c * dimension, coordinates, 0, dimension);
+            points[c] = new Point(coordinates);
+        }
+        return points;
+    }
+
+    /**
+     * Gets the total weight (number of points, if they are not weighted) received so far by every cluster
+     * @return weights
+     * @throws IllegalStateException if less than k points have been added
+     */
+    public synchronized double[] getClustersWeight() throws IllegalStateException {
+        ensureSeeded();
+        return received.clone();
+    }
+
+    /**
+     * Gets the cluster of a point according to the current centroids, without adding it to the stream
+     * @param point point
+     * @return cluster
+     * @throws NullPointerException if the point is null
+     * @throws IllegalArgumentException if the point doesn't belong to the domain
+     * @throws IllegalStateException if less than k points have been added
+     */
+    public synchronized int getLabel(final Point point) throws NullPointerException, IllegalArgumentException, IllegalStateException {
+        if (point == null) {
+            throw new NullPointerException("Point can't be null");
+        }
+        if (!domain.contains(point)) {
+            throw new IllegalArgumentException("Incompatible point");
+        }
+        ensureSeeded();
+        for (int j = 0; j < dimension; j++) {
+            this.point[j] = point.getCoordinate(j + 1);
+                // cannot throws exception because the point belongs to the domain
+        }
+        return nearestCentroid();
+    }
+
+    /**
+     * Clusterizes a dataset according to the current centroids, without adding it to the stream
+     * @param data points
+     * @return clusterization, with the current centroids
+     * @throws NullPointerException if the dataset is null
+     * @throws IllegalArgumentException if the dataset doesn't belong to the domain
+     * @throws IllegalStateException if less than k points have been added
+     */
+    public synchronized Clustering getClustering(final Dataset data) throws NullPointerException, IllegalArgumentException, IllegalStateException {
+        if (data == null) {
+            throw new NullPointerException("Input data can't be null");
+        }
+        if (!domain.equals(data.getDomain())) {
+            throw new IllegalArgumentException("Incompatible domain");
+        }
+        ensureSeeded();
+        return KMeans.assign(centroids.clone(), data, null);
+    }
+
+    /**
+     * Adds the point under update
+     * @param weight weight of the point
+     * @return cluster of the point, -1 if the centroids are not seeded yet
+     */
+    private int update(double weight) {
+        count++;
+        if (warmUp != null) {
+            warmUp.add(point, weight);
+            if (warmUp.size() < warmUp.capacity()) {
+                return -1;
+            }
+            seed();
+            return nearestCentroid();   // already counted in the seeding
+        }
+
+        int c = nearestCentroid();
+        received[c] += weight;
+        float rate = (float) Math.max(weight / received[c], minLearningRate);
+        for (int j = 0, offset = c * dimension; j < dimension; j++) {
+            centroids[offset + j] += rate * (point[j] - centroids[offset + j]);
+        }
+        return c;
+    }
+
+    /**
+     * Seeds the centroids, if they are not seeded yet
+     * @throws IllegalStateException if less than k points have been added
+     */
+    private void ensureSeeded() throws IllegalStateException {
+        if (warmUp != null) {
+            if (warmUp.size() < k) {
+                throw new IllegalStateException("Less than k points have been added");
+            }
+            seed();
+        }
+    }
+
+    /**
+     * Clusterizes the warm-up buffer and releases it
+     */
+    private void seed() {
+        KMeans<Point> kMeans = new KMeans<>();
+        kMeans.setSeedingStrategy(seedingStrategy);
+        kMeans.setSeed(seed);
+        Clustering clustering = kMeans.clusterize(k, warmUp);
+        for (int c = 0; c < k; c++) {
+            System.arraycopy(clustering.getCentroid(c).getCoordinates(), 0, centroids, c * dimension, dimension);
+        }
+        for (int p = 0; p < warmUp.size(); p++) {
+            received[clustering.getLabel(p)] += warmUp.getWeight(p);
+        }
+        warmUp = null;
+    }
+
+    /**
+     * Finds the nearest centroid of the point under update
+     * @return index of the nearest centroid
+     */
+    private int nearestCentroid() {
+        float minDistance = Float.POSITIVE_INFINITY;
+        int nearestCentroid = 0;
+        for (int c = 0, offset = 0; c < k; c++, offset += dimension) {
+            float distance = 0;
+            for (int j = 0; j < dimension; j++) {
+                float difference = centroids[offset + j] - point[j];
+                distance += difference*difference;
+            }
+            if (distance < minDistance) {
+                minDistance = distance;
+                nearestCentroid = c;
+            }
+        }
+        return nearestCentroid;
+    }
+
+    /**
+     * Fixed-capacity buffer of weighted points
+     */
+    private static final class WarmUp implements Dataset {
+        private final Domain domain;
+        private final float[][] columns;
+        private final double[] weights;
+        private int size = 0;
+
+        /**
+         * Constructor
+         * @param domain domain of the points
+         * @param capacity maximum number of points
+         */
+        WarmUp(final Domain domain, int capacity) {
+            this.domain = domain;
+            this.columns = new float[domain.getDimension()][capacity];
+            this.weights = new double[capacity];
+        }
+
+        /**
+         * Appends a point
+         * @param point coordinates of the point
+         * @param weight weight of the point
+         */
+        void add(final float[] point, double weight) {
+            for (int j = 0; j < columns.length; j++) {
+                columns[j][size] = point[j];
+            }
+            weights[size++] = weight;
+        }
+
+        /**
+         * @return maximum number of points
+         */
+        int capacity() {
+            return weights.length;
+        }
+
+        @Override
+        public Domain getDomain() {
+            return domain;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public float getValue(int index, int dimension) {
+            return columns[dimension][index];
+        }
+
+        @Override
+        public double getWeight(int index) {
+            return weights[index];
+        }
+    }
+}
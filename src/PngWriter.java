@@ -0,0 +1,331 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes an 8-bit RGB PNG image row by row, so that the whole image never needs to be in memory, or a palette-indexed
+ * PNG image from the labels of its pixels
+ */
+public final class PngWriter implements Closeable {
+    /**
+     * PNG signature
+     */
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    /**
+     * Maximum size of the data of an IDAT chunk
+     */
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    /**
+     * Compression level of the indexed images: the rows of indexes are very repetitive, so a faster level than the
+     * default costs little in size
+     */
+    private static final int COMPRESSION_LEVEL = 4;
+
+    /**
+     * Size of the uncompressed data that a task of the parallel encoder compresses
+     */
+    private static final int STRIPE_SIZE = 1 << 20;
+
+    /**
+     * Size of the deflate window: every stripe is compressed with the end of the previous one as dictionary, so the
+     * parallel compression loses almost nothing
+     */
+    private static final int WINDOW_SIZE = 1 << 15;
+
+    private final DataOutputStream out;
+    private final int width, height;
+    private final Deflater compressor;
+    private final DeflaterOutputStream deflater;
+    private int rows = 0;
+
+    /**
+     * Constructor. It writes the header of the image
+     * @param out stream where the image is written (closed by {@link #close()})
+     * @param width width of the image
+     * @param height height of the image
+     * @throws IOException if an error occurs writing the stream
+     * @throws NullPointerException if the stream is null
+     * @throws IllegalArgumentException if width or height are < 1
+     */
+    public PngWriter(OutputStream out, int width, int height) throws IOException, NullPointerException, IllegalArgumentException {
+        if (out == null) {
+            throw new NullPointerException("Output stream can't be null");
+        }
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Width and height must be positive");
+        }
+        this.out = new DataOutputStream(out);
+        this.width = width;
+        this.height = height;
+
+        writeHeader(this.out, width, height, 8, 2);     // colour type: RGB
+        this.compressor = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        this.deflater = new DeflaterOutputStream(new ChunkOutputStream(), compressor, CHUNK_SIZE);
+    }
+
+    /**
+     * Writes the next row of the image
+     * @param rgb red, green and blue value of every pixel of the row (3*width bytes)
+     * @throws IOException if an error occurs writing the stream
+     * @throws IllegalArgumentException if the row doesn't have 3*width bytes
+     * @throws IllegalStateException if all the rows are already written
+     */
+    public void writeRow(final byte[] rgb) throws IOException, IllegalArgumentException, IllegalStateException {
+        if (rgb.length != 3 * width) {
+            throw new IllegalArgumentException("Row must have 3*width bytes");
+        }
+        if (rows == height) {
+            throw new IllegalStateException("All the rows are already written");
+        }
+        deflater.write(0);      // filter type: none
+        deflater.write(rgb);
+        rows++;
+    }
+
+    /**
+     * Completes the image and closes the stream
+     * @throws IOException if an error occurs writing the stream
+     * @throws IllegalStateException if not all the rows are written
+     */
+    @Override
+    public void close() throws IOException, IllegalStateException {
+        if (rows != height) {
+            compressor.end();
+            out.close();
+            throw new IllegalStateException("Only " + rows + " of " + height + " rows are written");
+        }
+        deflater.finish();
+        compressor.end();
+        writeChunk("IEND", new byte[0], 0, 0);
+        out.close();
+    }
+
+    /**
+     * Writes a palette-indexed PNG image, with the least bit depth (1, 2, 4 or 8) that can represent all the colours of
+     * the palette. The rows are not filtered (as recommended for the indexed images) and, on a pool, the data is
+     * compressed in parallel stripes that form a single deflate stream
+     * @param out stream where the image is written (not closed)
+     * @param width width of the image
+     * @param height height of the image
+     * @param palette red, green and blue value of every colour (at most 256 colours)
+     * @param labels index of the colour of every pixel, row by row (width*height labels)
+     * @param pool pool on which the data is compressed, null for the sequential compression
+     * @throws IOException if an error occurs writing the stream
+     * @throws NullPointerException if the stream, the palette or the labels are null
+     * @throws IllegalArgumentException if width or height are < 1, the palette is empty, has more than 256 colours or a
+     * partial colour, or the labels are not width*height
+     */
+    public static void writeIndexed(OutputStream out, int width, int height, final byte[] palette, final int[] labels, final ForkJoinPool pool) throws IOException, NullPointerException, IllegalArgumentException {
+        if (out == null || palette == null || labels == null) {
+            throw new NullPointerException("Stream, palette and labels can't be null");
+        }
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Width and height must be positive");
+        }
+        if (palette.length == 0 || palette.length > 3 * 256 || palette.length % 3 != 0) {
+            throw new IllegalArgumentException("Palette must have from 1 to 256 RGB colours");
+        }
+        if ((long) width * height != labels.length) {
+            throw new IllegalArgumentException("Labels must be width*height");
+        }
+
+        int colours = palette.length / 3;
+        int depth = (colours <= 2) ? 1 : (colours <= 4) ? 2 : (colours <= 16) ? 4 : 8;
+        int rowSize = 1 + (width * depth + 7) / 8;      // filter type and packed indexes
+        long size = (long) rowSize * height;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Image is too large");
+        }
+
+        byte[] raw = new byte[(int) size];
+        SliceAction.run(height, y -> pack(labels, y * width, width, depth, raw, y * rowSize + 1), pool);   // filter type 0 (none) is already there
+
+        int stripes = (pool == null) ? 1 : (raw.length + STRIPE_SIZE - 1) / STRIPE_SIZE;
+        byte[][] compressed = new byte[stripes][];
+        SliceAction.run(stripes, s -> compressed[s] = compress(raw, s * STRIPE_SIZE, (s == stripes - 1) ? raw.length : (s + 1) * STRIPE_SIZE), pool);
+        Adler32 checksum = new Adler32();
+        checksum.update(raw);
+
+        DataOutputStream data = new DataOutputStream(out);
+        writeHeader(data, width, height, depth, 3);     // colour type: palette
+        writeChunk(data, "PLTE", palette, 0, palette.length);
+        byte[] idat = new byte[CHUNK_SIZE];
+        idat[0] = 0x78;     // zlib header: deflate with 32K window
+        idat[1] = 0x5E;     // fast compression, check bits
+        int length = 2;
+        for (byte[] stripe : compressed) {
+            for (int offset = 0; offset < stripe.length; ) {
+                int copied = Math.min(stripe.length - offset, CHUNK_SIZE - length);
+                System.arraycopy(stripe, offset, idat, length, copied);
+                offset += copied;
+                length += copied;
+                if (length == CHUNK_SIZE) {
+                    writeChunk(data, "IDAT", idat, 0, length);
+                    length = 0;
+                }
+            }
+        }
+        if (length + 4 > CHUNK_SIZE) {
+            writeChunk(data, "IDAT", idat, 0, length);
+            length = 0;
+        }
+        int adler = (int) checksum.getValue();
+        idat[length] = (byte) (adler >>> 24);
+        idat[length + 1] = (byte) (adler >>> 16);
+        idat[length + 2] = (byte) (adler >>> 8);
+        idat[length + 3] = (byte) adler;
+        writeChunk(data, "IDAT", idat, 0, length + 4);
+        writeChunk(data, "IEND", new byte[0], 0, 0);
+        data.flush();
+    }
+
+    /**
+     * Packs a row of labels in bytes, with the first pixel in the most significant bits
+     * @param labels labels
+     * @param from index of the first label of the row
+     * @param width number of labels of the row
+     * @param depth bits of every label (1, 2, 4 or 8)
+     * @param raw buffer of the packed row
+     * @param offset index of the first byte of the row in the buffer
+     */
+    private static void pack(final int[] labels, int from, int width, int depth, final byte[] raw, int offset) {
+        if (depth == 8) {
+            for (int x = 0; x < width; x++) {
+                raw[offset + x] = (byte) labels[from + x];
+            }
+            return;
+        }
+        int perByte = 8 / depth;
+        for (int x = 0; x < width; x += perByte) {
+            int packed = 0;
+            for (int i = 0; i < perByte; i++) {
+                packed = (packed << depth) | ((x + i < width) ? labels[from + x + i] : 0);
+            }
+            raw[offset + x / perByte] = (byte) packed;
+        }
+    }
+
+    /**
+     * Compresses a stripe of the data as a part of a raw deflate stream: every stripe ends on a byte boundary (with a
+     * sync flush), only the last one ends the stream
+     * @param raw data
+     * @param from index of the first byte of the stripe
+     * @param to index of the byte after the stripe, raw.length for the last stripe
+     * @return compressed stripe
+     */
+    private static byte[] compress(final byte[] raw, int from, int to) {
+        Deflater compressor = new Deflater(COMPRESSION_LEVEL, true);
+        try {
+            if (from > 0) {
+                int window = Math.min(from, WINDOW_SIZE);
+                compressor.setDictionary(raw, from - window, window);
+            }
+            compressor.setInput(raw, from, to - from);
+            boolean last = to == raw.length;
+            if (last) {
+                compressor.finish();
+            }
+
+            byte[] buffer = new byte[Math.max(64, (to - from) / 4)];
+            int length = 0;
+            while (true) {
+                length += compressor.deflate(buffer, length, buffer.length - length, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                if (last ? compressor.finished() : (length < buffer.length && compressor.needsInput())) {
+                    return Arrays.copyOf(buffer, length);
+                }
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+                }
+            }
+        } finally {
+            compressor.end();
+        }
+    }
+
+    /**
+     * Writes the signature and the IHDR chunk
+     * @param out stream
+     * @param width width of the image
+     * @param height height of the image
+     * @param depth bit depth
+     * @param colourType colour type
+     * @throws IOException if an error occurs writing the stream
+     */
+    private static void writeHeader(DataOutputStream out, int width, int height, int depth, int colourType) throws IOException {
+        out.write(SIGNATURE);
+        ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+        DataOutputStream headerData = new DataOutputStream(header);
+        headerData.writeInt(width);
+        headerData.writeInt(height);
+        headerData.writeByte(depth);
+        headerData.writeByte(colourType);
+        headerData.writeByte(0);    // compression: deflate
+        headerData.writeByte(0);    // filter method: adaptive
+        headerData.writeByte(0);    // interlace: none
+        writeChunk(out, "IHDR", header.toByteArray(), 0, header.size());
+    }
+
+    /**
+     * Writes a chunk
+     * @param type type of the chunk
+     * @param data array with the data of the chunk
+     * @param offset offset of the data in the array
+     * @param length length of the data
+     * @throws IOException if an error occurs writing the stream
+     */
+    private void writeChunk(String type, final byte[] data, int offset, int length) throws IOException {
+        writeChunk(out, type, data, offset, length);
+    }
+
+    /**
+     * Writes a chunk
+     * @param out stream
+     * @param type type of the chunk
+     * @param data array with the data of the chunk
+     * @param offset offset of the data in the array
+     * @param length length of the data
+     * @throws IOException if an error occurs writing the stream
+     */
+    private static void writeChunk(DataOutputStream out, String type, final byte[] data, int offset, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, offset, length);
+
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, offset, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Stream that wraps the compressed data in IDAT chunks
+     */
+    private final class ChunkOutputStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int length = Math.min(len, CHUNK_SIZE);
+                writeChunk("IDAT", b, off, length);
+                off += length;
+                len -= length;
+            }
+        }
+    }
+}
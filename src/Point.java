@@ -104,4 +104,25 @@ public class Point {
         }
         return squareSum;
     }
+
+    /**
+     * Calculate the distance between two points with a metric
+     * @param p1 first point
+     * @param p2 second point
+     * @param metric distance metric
+     * @return distance
+     * @throws IllegalArgumentException if the points has incompatible dimensions, or the metric is not defined for them
+     * @throws NullPointerException if one or both the points, or the metric, are null
+     */
+    public static float getDistance(Point p1, Point p2, DistanceMetric metric) throws IllegalArgumentException, NullPointerException {
+        if (p1 == null || p2 == null || metric == null) {
+            throw new NullPointerException("Points and metric can't be nulls");
+        }
+
+        if (p1.getDimension() != p2.getDimension()) {
+            throw new IllegalArgumentException("Incompatible point (due to its dimension)");
+        }
+
+        return metric.distance(p1.coordinates, p2.coordinates);
+    }
 }
@@ -0,0 +1,141 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a set of points in the point file format, that {@link MappedDataset} maps in memory without decoding it.
+ * A point file is little-endian and made of:
+ * <ul>
+ *     <li>a header: magic number "KMPT", version, dimension, column type, number of points (long), lower-bounds and
+ *     upper-bounds of the domain (floats), padded to a multiple of 64 bytes;</li>
+ *     <li>a column of values (of the column type) for every dimension, one after the other.</li>
+ * </ul>
+ */
+public final class PointFileWriter {
+    /**
+     * Magic number of the point files ("KMPT")
+     */
+    static final int MAGIC = 0x4B4D5054;
+
+    /**
+     * Version of the format
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Size of the fixed part of the header
+     */
+    static final int FIXED_HEADER_SIZE = 24;
+
+    /**
+     * Alignment of the columns
+     */
+    private static final int ALIGNMENT = 64;
+
+    /**
+     * Size of the buffer of the writes
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private PointFileWriter() { }
+
+    /**
+     * Writes a set of points
+     * @param sop Set Of Points
+     * @param path path of the file in the filesystem
+     * @param type type of the values of the columns
+     * @throws IOException if an error occurs writing the file
+     * @throws NullPointerException if a parameter is null
+     * @throws IllegalArgumentException if the type is UINT8 and a coordinate is not an integer in [0, 255]
+     */
+    public static void write(final SetOfPoints<? extends Point> sop, String path, ColumnType type) throws IOException, NullPointerException, IllegalArgumentException {
+        write(new ColumnarDataset(sop), path, type);
+    }
+
+    /**
+     * Writes a dataset (the weights of the points are not written)
+     * @param data points
+     * @param path path of the file in the filesystem
+     * @param type type of the values of the columns
+     * @throws IOException if an error occurs writing the file
+     * @throws NullPointerException if a parameter is null
+     * @throws IllegalArgumentException if the type is UINT8 and a coordinate is not an integer in [0, 255]
+     */
+    public static void write(final Dataset data, String path, ColumnType type) throws IOException, NullPointerException, IllegalArgumentException {
+        if (data == null || path == null || type == null) {
+            throw new NullPointerException("Input data, path and type can't be null");
+        }
+        int dimension = data.getDomain().getDimension();
+        int size = data.size();
+        if (type == ColumnType.UINT8) {
+            for (int j = 0; j < dimension; j++) {
+                for (int p = 0; p < size; p++) {
+                    float value = data.getValue(p, j);
+                    if (!(value >= 0 && value <= 255 && value == (int) value)) {
+                        throw new IllegalArgumentException("Values must be integers in [0, 255] to be written as UINT8");
+                    }
+                }
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(dimension).putInt(type.ordinal()).putLong(size);
+            for (float bound : data.getDomain().getLowerBounds()) {
+                put(channel, buffer, 4).putFloat(bound);
+            }
+            for (float bound : data.getDomain().getUpperBounds()) {
+                put(channel, buffer, 4).putFloat(bound);
+            }
+            for (long position = FIXED_HEADER_SIZE + 8L * dimension; position < headerSize(dimension); position++) {
+                put(channel, buffer, 1).put((byte) 0);
+            }
+
+            for (int j = 0; j < dimension; j++) {
+                for (int p = 0; p < size; p++) {
+                    if (type == ColumnType.FLOAT32) {
+                        put(channel, buffer, 4).putFloat(data.getValue(p, j));
+                    } else {
+                        put(channel, buffer, 1).put((byte) (int) data.getValue(p, j));
+                    }
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Computes the size of the header of a point file
+     * @param dimension dimension of the points
+     * @return size of the header, in bytes
+     */
+    static long headerSize(int dimension) {
+        long size = FIXED_HEADER_SIZE + 8L * dimension;
+        return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * Ensures that a buffer has room for some bytes, writing its content to the channel if it has not
+     * @param channel channel
+     * @param buffer buffer
+     * @param bytes number of bytes to put
+     * @return buffer
+     * @throws IOException if an error occurs writing the channel
+     */
+    private static ByteBuffer put(final FileChannel channel, final ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+        return buffer;
+    }
+}
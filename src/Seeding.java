@@ -0,0 +1,571 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Chooses the initial centroids of k-means according to a SeedingStrategy.
+ * It keeps, for every point, the squared distance from the nearest centroid chosen so far, and updates it only with the
+ * new centroids, so every strategy costs O(n*k). k-means++ and k-means|| multiply the probability of a point by its
+ * weight. The points are processed in fixed slices, possibly in parallel, and the per-slice results are combined in
+ * order, so the choice doesn't depend on the pool
+ */
+final class Seeding {
+    /**
+     * Number of oversampling passes of k-means||
+     */
+    private static final int ROUNDS = 5;
+
+    /**
+     * Maximum number of Lloyd iterations on the weighted candidates of k-means||
+     */
+    private static final int CANDIDATES_ITERATIONS = 20;
+
+    private final Dataset data;
+    private final ForkJoinPool pool;
+    private final int numPoints, dimension, slices;
+
+    /**
+     * Squared distance of every point from the nearest centroid chosen so far
+     */
+    private final float[] minDistance;
+
+    /**
+     * Weighted sum, maximum and index of the maximum (the first one) of the min distances of every slice
+     */
+    private final double[] sliceSum;
+    private final float[] sliceMax;
+    private final int[] sliceArgMax;
+
+    /**
+     * Time taken to choose the first i+1 centroids at i (in nanoseconds), null if not measured
+     */
+    private final long[] prefixTimes;
+    private final long start;
+
+    /**
+     * Constructor
+     * @param data points
+     * @param pool pool on which the slices are processed, null for the sequential execution
+     * @param prefixTimes buffer of the time taken to choose every prefix of the centroids, null to not measure it
+     */
+    private Seeding(final Dataset data, final ForkJoinPool pool, final long[] prefixTimes) {
+        this.start = System.nanoTime();
+        this.data = data;
+        this.pool = pool;
+        this.prefixTimes = prefixTimes;
+        this.numPoints = data.size();
+        this.dimension = data.getDomain().getDimension();
+        this.slices = (numPoints + UpdateTask.SLICE_SIZE - 1) / UpdateTask.SLICE_SIZE;
+        this.minDistance = new float[numPoints];
+        Arrays.fill(minDistance, Float.POSITIVE_INFINITY);
+        this.sliceSum = new double[slices];
+        this.sliceMax = new float[slices];
+        this.sliceArgMax = new int[slices];
+    }
+
+    /**
+     * Determines the initial centroids
+     * @param strategy seeding strategy
+     * @param k number of centroids
+     * @param data points (at least k)
+     * @param seed seed of the random choices
+     * @param pool pool on which the points are processed, null for the sequential execution
+     * @return centroids
+     */
+    static float[][] initialCentroids(final SeedingStrategy strategy, int k, final Dataset data, long seed, final ForkJoinPool pool) {
+        return initialCentroids(strategy, k, data, seed, pool, false);
+    }
+
+    /**
+     * Determines the initial centroids, optionally starting the farthest-point strategy from a random point instead of
+     * the first one (e.g. to make different restarts of the same clusterization)
+     * @param strategy seeding strategy
+     * @param k number of centroids
+     * @param data points (at least k)
+     * @param seed seed of the random choices
+     * @param pool pool on which the points are processed, null for the sequential execution
+     * @param randomStart true if the farthest-point strategy has to start from a random point
+     * @return centroids
+     */
+    static float[][] initialCentroids(final SeedingStrategy strategy, int k, final Dataset data, long seed, final ForkJoinPool pool, boolean randomStart) {
+        return initialCentroids(strategy, k, data, seed, pool, randomStart, null);
+    }
+
+    /**
+     * Determines the initial centroids with a strategy that chooses them one after the other (see
+     * {@link #isIncremental(SeedingStrategy)}), measuring the time taken to choose every prefix of them: the first i
+     * centroids are the ones chosen for i, so prefixTimes[i-1] is the time of the seeding of i centroids
+     * @param strategy seeding strategy, incremental
+     * @param k number of centroids
+     * @param data points (more than k)
+     * @param seed seed of the random choices
+     * @param pool pool on which the points are processed, null for the sequential execution
+     * @param prefixTimes buffer of k elements, filled with the time taken to choose the first i+1 centroids at i (in
+     *                    nanoseconds)
+     * @return centroids
+     */
+    static float[][] initialCentroids(final SeedingStrategy strategy, int k, final Dataset data, long seed, final ForkJoinPool pool, final long[] prefixTimes) {
+        return initialCentroids(strategy, k, data, seed, pool, false, prefixTimes);
+    }
+
+    /**
+     * Determines the initial centroids
+     * @param strategy seeding strategy
+     * @param k number of centroids
+     * @param data points (at least k)
+     * @param seed seed of the random choices
+     * @param pool pool on which the points are processed, null for the sequential execution
+     * @param randomStart true if the farthest-point strategy has to start from a random point
+     * @param prefixTimes buffer of the time taken to choose every prefix of the centroids, null to not measure it
+     * @return centroids
+     */
+    private static float[][] initialCentroids(final SeedingStrategy strategy, int k, final Dataset data, long seed, final ForkJoinPool pool, boolean randomStart, final long[] prefixTimes) {
+        if (data.size() == k) {
+            float[][] centroids = new float[k][];
+            for (int i = 0; i < k; i++) {
+                centroids[i] = KMeans.copyPoint(data, i);
+            }
+
+            return centroids;
+        }
+
+        Seeding seeding = new Seeding(data, pool, prefixTimes);
+        switch (strategy) {
+            case RANDOM:
+                return seeding.random(k, new Random(seed));
+            case KMEANS_PLUS_PLUS:
+                return seeding.kMeansPlusPlus(k, new Random(seed));
+            case KMEANS_PARALLEL:
+                return seeding.kMeansParallel(k, seed);
+            default:
+                return seeding.farthestPoint(k, randomStart ? new Random(seed).nextInt(data.size()) : 0);
+        }
+    }
+
+    /**
+     * Checks if the centroids chosen by a strategy for k are the first ones of those chosen for any greater k (with the
+     * same seed), so that the centroids for the greatest k serve all the smaller ones
+     * @param strategy seeding strategy
+     * @return true if the strategy chooses the centroids one after the other
+     */
+    static boolean isIncremental(final SeedingStrategy strategy) {
+        return strategy != SeedingStrategy.KMEANS_PARALLEL;
+    }
+
+    /**
+     * Adds centroids to those of a previous clusterization, e.g. to warm-start a clusterization with more clusters.
+     * The farthest-point strategy keeps choosing the farthest points, the others choose with the k-means++ probability;
+     * the distance of every point from the previous centroids is the one from the centroid of its cluster
+     * @param strategy seeding strategy
+     * @param previous previous clusterization of the points (less than k clusters)
+     * @param k number of centroids
+     * @param data points (at least k)
+     * @param seed seed of the random choices
+     * @param pool pool on which the points are processed, null for the sequential execution
+     * @return centroids, the first ones are those of the previous clusterization
+     */
+    static float[][] extendCentroids(final SeedingStrategy strategy, final Clustering previous, int k, final Dataset data, long seed, final ForkJoinPool pool) {
+        float[][] centroids = new float[k][];
+        int chosen = previous.getK();
+        for (int c = 0; c < chosen; c++) {
+            centroids[c] = previous.getCentroid(c).getCoordinates();
+        }
+
+        Seeding seeding = new Seeding(data, pool, null);
+        seeding.addCentroids(centroids, 0, 0, previous);
+        if (strategy == SeedingStrategy.FARTHEST_POINT) {
+            seeding.continueFarthestPoint(centroids, chosen);
+        } else {
+            seeding.continueKMeansPlusPlus(centroids, chosen, new Random(seed));
+        }
+        return centroids;
+    }
+
+    /**
+     * Picks a starting point and then iteratively the point that maximize the minimum distance from previous centroids
+     * @param k number of centroids
+     * @param first index of the starting point
+     * @return centroids
+     */
+    private float[][] farthestPoint(int k, int first) {
+        float[][] centroids = new float[k][];
+        centroids[0] = KMeans.copyPoint(data, first);
+        addCentroids(centroids, 0, 1);
+        recordPrefix(0);
+        continueFarthestPoint(centroids, 1);
+        return centroids;
+    }
+
+    /**
+     * Picks the remaining centroids that maximize the minimum distance from previous centroids, given the centroids
+     * already chosen
+     * @param centroids centroids
+     * @param chosen number of centroids already chosen (and added to the min distances)
+     */
+    private void continueFarthestPoint(float[][] centroids, int chosen) {
+        for (int i = chosen; i < centroids.length; i++) {
+            float maxMinDistance = 0;
+            int newCentroidIndex = 0;
+            for (int s = 0; s < slices; s++) {
+                if (sliceMax[s] > maxMinDistance) {
+                    maxMinDistance = sliceMax[s];
+                    newCentroidIndex = sliceArgMax[s];
+                }
+            }
+            centroids[i] = KMeans.copyPoint(data, newCentroidIndex);
+            addCentroids(centroids, i, i + 1);
+            recordPrefix(i);
+        }
+    }
+
+    /**
+     * Records the time taken to choose the centroids up to one, if measured
+     * @param i index of the last chosen centroid
+     */
+    private void recordPrefix(int i) {
+        if (prefixTimes != null) {
+            prefixTimes[i] = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Picks k distinct points at random
+     * @param k number of centroids
+     * @param random generator
+     * @return centroids
+     */
+    private float[][] random(int k, final Random random) {
+        int[] indexes = new int[k];
+        for (int i = 0; i < k; i++) {
+            boolean distinct;
+            do {
+                indexes[i] = random.nextInt(numPoints);
+                distinct = true;
+                for (int j = 0; j < i && distinct; j++) {
+                    distinct = indexes[j] != indexes[i];
+                }
+            } while (!distinct);
+            recordPrefix(i);
+        }
+
+        float[][] centroids = new float[k][];
+        for (int i = 0; i < k; i++) {
+            centroids[i] = KMeans.copyPoint(data, indexes[i]);
+        }
+        return centroids;
+    }
+
+    /**
+     * Picks a point at random and then iteratively a point with probability proportional to its squared distance from
+     * the nearest previous centroid
+     * @param k number of centroids
+     * @param random generator
+     * @return centroids
+     */
+    private float[][] kMeansPlusPlus(int k, final Random random) {
+        float[][] centroids = new float[k][];
+        centroids[0] = KMeans.copyPoint(data, random.nextInt(numPoints));
+        addCentroids(centroids, 0, 1);
+        recordPrefix(0);
+        continueKMeansPlusPlus(centroids, 1, random);
+        return centroids;
+    }
+
+    /**
+     * Picks the remaining centroids with the k-means++ probability, given the centroids already chosen
+     * @param centroids centroids
+     * @param chosen number of centroids already chosen (and added to the min distances)
+     * @param random generator
+     */
+    private void continueKMeansPlusPlus(float[][] centroids, int chosen, final Random random) {
+        for (int i = chosen; i < centroids.length; i++) {
+            centroids[i] = KMeans.copyPoint(data, sample(random));
+            addCentroids(centroids, i, i + 1);
+            recordPrefix(i);
+        }
+    }
+
+    /**
+     * Oversamples candidates with the k-means++ probability in a few passes, weights them with the number of points
+     * nearest to them and reduces them to k centroids with a weighted k-means++ followed by weighted Lloyd iterations
+     * @param k number of centroids
+     * @param seed seed of the random choices
+     * @return centroids
+     */
+    private float[][] kMeansParallel(int k, long seed) {
+        Random random = new Random(seed);
+        ArrayList<float[]> candidates = new ArrayList<>();
+        candidates.add(KMeans.copyPoint(data, random.nextInt(numPoints)));
+        addCentroids(candidates.toArray(new float[0][]), 0, 1);
+
+        double oversampling = 2.0 * k;
+        int[][] sampled = new int[slices][];
+        int[] sampledSize = new int[slices];
+        for (int round = 0; round < ROUNDS; round++) {
+            double cost = totalSum();
+            if (cost == 0) {
+                break;
+            }
+            long roundSeed = random.nextLong();
+            SliceAction.run(slices, s -> {
+                SplittableRandom sliceRandom = new SplittableRandom(roundSeed + s);
+                    // the random numbers of every slice don't depend on the thread that processes it
+                int[] indexes = new int[16];
+                int size = 0;
+                for (int p = s * UpdateTask.SLICE_SIZE, to = Math.min(p + UpdateTask.SLICE_SIZE, numPoints); p < to; p++) {
+                    if (sliceRandom.nextDouble() * cost < oversampling * data.getWeight(p) * minDistance[p]) {
+                        if (size == indexes.length) {
+                            indexes = Arrays.copyOf(indexes, 2 * size);
+                        }
+                        indexes[size++] = p;
+                    }
+                }
+                sampled[s] = indexes;
+                sampledSize[s] = size;
+            }, pool);
+
+            int previous = candidates.size();
+            for (int s = 0; s < slices; s++) {
+                for (int i = 0; i < sampledSize[s]; i++) {
+                    candidates.add(KMeans.copyPoint(data, sampled[s][i]));
+                }
+            }
+            addCentroids(candidates.toArray(new float[0][]), previous, candidates.size());
+        }
+
+        float[][] centroids = new float[k][];
+        if (candidates.size() <= k) {
+            for (int i = 0; i < candidates.size(); i++) {
+                centroids[i] = candidates.get(i);
+            }
+            continueKMeansPlusPlus(centroids, candidates.size(), random);
+            return centroids;
+        }
+
+        float[][] points = candidates.toArray(new float[0][]);
+        return reduceCandidates(points, weights(points), k, random);
+    }
+
+    /**
+     * Sums the weights of the points nearest to every candidate
+     * @param candidates candidates
+     * @return weights of the candidates
+     */
+    private double[] weights(final float[][] candidates) {
+        double[][] sliceWeights = new double[slices][];
+        SliceAction.run(slices, s -> {
+            double[] weights = new double[candidates.length];
+            for (int p = s * UpdateTask.SLICE_SIZE, to = Math.min(p + UpdateTask.SLICE_SIZE, numPoints); p < to; p++) {
+                float nearestDistance = Float.POSITIVE_INFINITY;
+                int nearest = 0;
+                for (int c = 0; c < candidates.length; c++) {
+                    float distance = KMeans.squaredDistance(data, p, candidates[c]);
+                    if (distance < nearestDistance) {
+                        nearestDistance = distance;
+                        nearest = c;
+                    }
+                }
+                weights[nearest] += data.getWeight(p);
+            }
+            sliceWeights[s] = weights;
+        }, pool);
+
+        double[] weights = new double[candidates.length];
+        for (double[] slice : sliceWeights) {
+            for (int c = 0; c < weights.length; c++) {
+                weights[c] += slice[c];
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Reduces weighted candidates to k centroids with a weighted k-means++ followed by weighted Lloyd iterations
+     * @param candidates candidates
+     * @param weights weights of the candidates
+     * @param k number of centroids
+     * @param random generator
+     * @return centroids
+     */
+    private float[][] reduceCandidates(final float[][] candidates, final double[] weights, int k, final Random random) {
+        int m = candidates.length;
+        float[][] centroids = new float[k][];
+        double[] candidateDistance = new double[m];
+        Arrays.fill(candidateDistance, Double.POSITIVE_INFINITY);
+
+        int first = 0;
+        double totalWeight = 0;
+        for (double weight : weights) {
+            totalWeight += weight;
+        }
+        double r = random.nextDouble() * totalWeight;
+        while (first < m - 1 && r >= weights[first]) {
+            r -= weights[first++];
+        }
+        centroids[0] = candidates[first];
+
+        for (int i = 1; i < k; i++) {
+            double total = 0;
+            for (int c = 0; c < m; c++) {
+                candidateDistance[c] = Math.min(candidateDistance[c], squaredDistance(candidates[c], centroids[i - 1]));
+                total += weights[c] * candidateDistance[c];
+            }
+            int chosen = m - 1;
+            double threshold = random.nextDouble() * total;
+            for (int c = 0; c < m; c++) {
+                threshold -= weights[c] * candidateDistance[c];
+                if (threshold < 0) {
+                    chosen = c;
+                    break;
+                }
+            }
+            centroids[i] = candidates[chosen];
+        }
+
+        int[] labels = new int[m];
+        for (int iteration = 0; iteration < CANDIDATES_ITERATIONS; iteration++) {
+            boolean changed = false;
+            for (int c = 0; c < m; c++) {
+                int nearest = 0;
+                double nearestDistance = Double.POSITIVE_INFINITY;
+                for (int i = 0; i < k; i++) {
+                    double distance = squaredDistance(candidates[c], centroids[i]);
+                    if (distance < nearestDistance) {
+                        nearestDistance = distance;
+                        nearest = i;
+                    }
+                }
+                changed |= labels[c] != nearest || iteration == 0;
+                labels[c] = nearest;
+            }
+            if (!changed) {
+                break;
+            }
+
+            double[][] sum = new double[k][dimension];
+            double[] size = new double[k];
+            for (int c = 0; c < m; c++) {
+                for (int j = 0; j < dimension; j++) {
+                    sum[labels[c]][j] += weights[c] * (double) candidates[c][j];
+                }
+                size[labels[c]] += weights[c];
+            }
+            for (int i = 0; i < k; i++) {
+                if (size[i] > 0) {
+                    float[] centroid = new float[dimension];
+                    for (int j = 0; j < dimension; j++) {
+                        centroid[j] = (float) (sum[i][j] / size[i]);
+                    }
+                    centroids[i] = centroid;
+                }
+            }
+        }
+
+        return centroids;
+    }
+
+    /**
+     * Samples a point with probability proportional to its weighted min distance
+     * @param random generator
+     * @return index of the point
+     */
+    private int sample(final Random random) {
+        double total = totalSum();
+        if (total == 0) {
+            return random.nextInt(numPoints);     // every point coincides with a centroid
+        }
+
+        double threshold = random.nextDouble() * total;
+        int lastSlice = 0;
+        for (int s = 0; s < slices; s++) {
+            if (sliceSum[s] == 0) {
+                continue;
+            }
+            lastSlice = s;
+            if (threshold < sliceSum[s]) {
+                break;
+            }
+            threshold -= sliceSum[s];
+        }
+
+        int chosen = sliceArgMax[lastSlice];    // if the rounding errors exhaust the threshold, a point with positive distance
+        double cumulative = 0;
+        for (int p = lastSlice * UpdateTask.SLICE_SIZE, to = Math.min(p + UpdateTask.SLICE_SIZE, numPoints); p < to; p++) {
+            cumulative += data.getWeight(p) * minDistance[p];
+            if (threshold < cumulative) {
+                chosen = p;
+                break;
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * Updates the min distances with some new centroids, and recomputes the per-slice results
+     * @param centroids centroids
+     * @param from first new centroid (inclusive)
+     * @param to last new centroid (exclusive)
+     */
+    private void addCentroids(final float[][] centroids, int from, int to) {
+        addCentroids(centroids, from, to, null);
+    }
+
+    /**
+     * Updates the min distances with some new centroids, and recomputes the per-slice results
+     * @param centroids centroids
+     * @param from first new centroid (inclusive)
+     * @param to last new centroid (exclusive)
+     * @param clustering clusterization whose clusters index the centroids, whose distance replaces the min distance of
+     *                   every point; null to keep the min distances
+     */
+    private void addCentroids(final float[][] centroids, int from, int to, final Clustering clustering) {
+        SliceAction.run(slices, s -> {
+            double sum = 0;
+            float max = 0;
+            int argMax = s * UpdateTask.SLICE_SIZE;
+            for (int p = argMax, end = Math.min(p + UpdateTask.SLICE_SIZE, numPoints); p < end; p++) {
+                float distance = (clustering == null) ? minDistance[p] : KMeans.squaredDistance(data, p, centroids[clustering.getLabel(p)]);
+                for (int c = from; c < to; c++) {
+                    distance = Math.min(distance, KMeans.squaredDistance(data, p, centroids[c]));
+                }
+                minDistance[p] = distance;
+                sum += data.getWeight(p) * distance;
+                if (distance > max) {
+                    max = distance;
+                    argMax = p;
+                }
+            }
+            sliceSum[s] = sum;
+            sliceMax[s] = max;
+            sliceArgMax[s] = argMax;
+        }, pool);
+    }
+
+    /**
+     * @return weighted sum of the min distances of all the points
+     */
+    private double totalSum() {
+        double total = 0;
+        for (int s = 0; s < slices; s++) {
+            total += sliceSum[s];
+        }
+        return total;
+    }
+
+    /**
+     * Calculates the squared euclidean distance between two coordinate arrays
+     * @param first first point
+     * @param second second point
+     * @return distance
+     */
+    private static double squaredDistance(final float[] first, final float[] second) {
+        double squareSum = 0;
+        for (int j = 0; j < first.length; j++) {
+            double difference = first[j] - second[j];
+            squareSum += difference*difference;
+        }
+        return squareSum;
+    }
+}
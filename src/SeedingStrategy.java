@@ -0,0 +1,29 @@
+/**
+ * Strategies to choose the initial centroids of k-means.
+ * All the strategies are reproducible: for a given seed they choose the same centroids, both in the sequential and in
+ * the parallel execution
+ */
+public enum SeedingStrategy {
+    /**
+     * Picks the first point and then iteratively the point that maximizes the minimum distance from the previous
+     * centroids. It doesn't depend on the seed
+     */
+    FARTHEST_POINT,
+
+    /**
+     * Picks k distinct points at random
+     */
+    RANDOM,
+
+    /**
+     * k-means++ (Arthur and Vassilvitskii, 2007): picks a point at random and then iteratively a point with
+     * probability proportional to its squared distance from the nearest previous centroid
+     */
+    KMEANS_PLUS_PLUS,
+
+    /**
+     * Scalable k-means++, or k-means|| (Bahmani et al., 2012): a few passes that oversample about 2k candidates
+     * each, with the same probability of k-means++, and then a weighted k-means++ on the candidates
+     */
+    KMEANS_PARALLEL
+}
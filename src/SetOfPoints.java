@@ -1,9 +1,13 @@
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 
 /**
- * Represents a set of points all belonging the same domain
+ * Represents a set of points all belonging the same domain.
+ * It keeps up to date, at every add and remove, the mean of the points and the sum of their squared deviations from
+ * it (with Welford's updates, that don't lose precision when the points are far from the origin), so that they cost
+ * O(dimension) to query instead of a pass over the points
  */
 public class SetOfPoints<T extends Point> {
     /**
@@ -14,6 +18,14 @@ public class SetOfPoints<T extends Point> {
      * Common domain of the points
      */
     private final Domain domain;
+    /**
+     * Mean of the points (0-indexed coordinates)
+     */
+    private final double[] mean;
+    /**
+     * Sum of the squared euclidean distances of the points from their mean
+     */
+    private double squaredDeviations;
 
     /**
      * Constructor
@@ -26,24 +38,37 @@ public class SetOfPoints<T extends Point> {
         }
         this.points = new ArrayList<>();
         this.domain = domain;
+        this.mean = new double[domain.getDimension()];
     }
 
     /**
      * Constructor
      * @param domain domain to which the points belong
      * @param points points to collect
-     * @throws NullPointerException if the domain is null
+     * @throws NullPointerException if the domain or a point is null
+     * @throws IllegalArgumentException if a point doesn't belong to the domain
      */
-    public SetOfPoints(final Domain domain, final Collection<T> points) throws NullPointerException {
+    public SetOfPoints(final Domain domain, final Collection<T> points) throws NullPointerException, IllegalArgumentException {
         if (domain == null) {
             throw new NullPointerException("Domain can't be null");
         }
         this.domain = domain;
+        this.mean = new double[domain.getDimension()];
         if (points != null) {
             this.points = new ArrayList<>(points);
         } else {
             this.points = new ArrayList<>();
         }
+        int count = 0;
+        for (T point : this.points) {
+            if (point == null) {
+                throw new NullPointerException("Point to add can't be null");
+            }
+            if (!domain.contains(point)) {
+                throw new IllegalArgumentException("Incompatible point");
+            }
+            accumulate(point, ++count);
+        }
     }
 
     /**
@@ -57,6 +82,8 @@ public class SetOfPoints<T extends Point> {
         }
         this.domain = sop.domain;
         this.points = new ArrayList<>(sop.getPoints());
+        this.mean = sop.mean.clone();
+        this.squaredDeviations = sop.squaredDeviations;
     }
 
     /**
@@ -84,8 +111,11 @@ public class SetOfPoints<T extends Point> {
         if (point == null) {
             throw new NullPointerException("Point to add can't be null");
         }
-        if (domain.contains(point))
-            return points.add(point);
+        if (domain.contains(point)) {
+            points.add(point);
+            accumulate(point, points.size());
+            return true;
+        }
         else
             throw new IllegalArgumentException("Incompatible point");
     }
@@ -105,6 +135,51 @@ public class SetOfPoints<T extends Point> {
         return result;
     }
 
+    /**
+     * Remove a point from the set in constant time: the last point of the set takes its place
+     * @param index index of the point to remove (0-indexed)
+     * @return removed point
+     * @throws IndexOutOfBoundsException if the index is <0 or >=size
+     */
+    public final T remove(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= points.size()) {
+            throw new IndexOutOfBoundsException("Invalid index");
+        }
+        T last = points.remove(points.size() - 1);
+        T point = last;
+        if (index < points.size()) {
+            point = points.set(index, last);
+        }
+        deaccumulate(point, points.size());
+        return point;
+    }
+
+    /**
+     * Remove a point from the set (the first occurrence, compared by reference); the last point of the set takes its
+     * place
+     * @param point point to remove
+     * @return true if the point was in the set, false otherwise
+     */
+    public final boolean remove(final T point) {
+        for (int i = 0; i < points.size(); i++) {
+            if (points.get(i) == point) {
+                remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the i-th point of the set
+     * @param index index of the point (0-indexed)
+     * @return point
+     * @throws IndexOutOfBoundsException if the index is <0 or >=size
+     */
+    public final T get(int index) throws IndexOutOfBoundsException {
+        return points.get(index);
+    }
+
     /**
      * Gets the size of the set
      * @return size
@@ -122,4 +197,59 @@ public class SetOfPoints<T extends Point> {
         T[] array = (T[]) Array.newInstance(Point.class, points.size());
         return points.toArray(array);
     }
+
+    /**
+     * Gets a coordinate of the mean of the points
+     * @param dimension coordinate to get (0-indexed)
+     * @return value of the coordinate, 0 if the set is empty
+     */
+    protected final double getMean(int dimension) {
+        return mean[dimension];
+    }
+
+    /**
+     * Gets the sum of the squared euclidean distances of the points from their mean
+     * @return sum, 0 if the set is empty
+     */
+    protected final double getSquaredDeviations() {
+        return squaredDeviations;
+    }
+
+    /**
+     * Updates mean and squared deviations with a point just added
+     * @param point added point
+     * @param count number of points, including the added one
+     */
+    private void accumulate(final T point, int count) {
+        for (int j = 0; j < mean.length; j++) {
+            float coordinate = point.getCoordinate(j + 1);
+                // cannot throws exception because the points respect the dimension of the domain
+            double delta = coordinate - mean[j];
+            mean[j] += delta / count;
+            squaredDeviations += delta * (coordinate - mean[j]);
+        }
+    }
+
+    /**
+     * Updates mean and squared deviations with a point just removed
+     * @param point removed point
+     * @param count number of points, excluding the removed one
+     */
+    private void deaccumulate(final T point, int count) {
+        if (count == 0) {
+            Arrays.fill(mean, 0);
+            squaredDeviations = 0;
+            return;
+        }
+        for (int j = 0; j < mean.length; j++) {
+            float coordinate = point.getCoordinate(j + 1);
+                // cannot throws exception because the points respect the dimension of the domain
+            double newMean = mean[j] + (mean[j] - coordinate) / count;
+            squaredDeviations -= (coordinate - newMean) * (coordinate - mean[j]);
+            mean[j] = newMean;
+        }
+        if (squaredDeviations < 0) {
+            squaredDeviations = 0;      // due floating-point arithmetic it can be slightly < 0
+        }
+    }
 }
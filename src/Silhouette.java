@@ -0,0 +1,119 @@
+import java.util.HashSet;
+import java.util.SplittableRandom;
+
+/**
+ * Estimates the silhouette coefficient of the clusterizations of a dataset on a fixed random sample of its points: the
+ * exact coefficient costs O(n^2), on a sample of m points it costs O(m^2) and the distances between the sampled points
+ * are computed only once for all the clusterizations.
+ * The silhouette of a point is (b - a) / max(a, b), where a is the mean distance from the other points of its cluster
+ * and b the least mean distance from the points of another cluster; the coefficient is the mean on all the points.
+ * The means are weighted with the weights of the points
+ */
+final class Silhouette {
+    /**
+     * Indexes of the sampled points, in increasing order
+     */
+    private final int[] sample;
+
+    /**
+     * Weights of the sampled points
+     */
+    private final double[] weights;
+
+    /**
+     * Euclidean distances between the sampled points: first (0, 1), (0, 2) ... (0, m-1), then (1, 2) ... (1, m-1) and so on
+     */
+    private final float[] distances;
+
+    /**
+     * Constructor
+     * @param data points
+     * @param size size of the sample (all the points if greater than their number)
+     * @param seed seed of the sampling
+     */
+    Silhouette(final Dataset data, int size, long seed) {
+        int numPoints = data.size();
+        if (size >= numPoints) {
+            sample = new int[numPoints];
+            for (int i = 0; i < numPoints; i++) {
+                sample[i] = i;
+            }
+        } else {
+            // Floyd's algorithm: size distinct indexes without a permutation of all the points
+            SplittableRandom random = new SplittableRandom(seed);
+            HashSet<Integer> chosen = new HashSet<>();
+            for (int j = numPoints - size; j < numPoints; j++) {
+                int index = random.nextInt(j + 1);
+                chosen.add(chosen.contains(index) ? j : index);
+            }
+            sample = chosen.stream().mapToInt(Integer::intValue).sorted().toArray();
+        }
+
+        int m = sample.length;
+        float[][] points = new float[m][];
+        weights = new double[m];
+        for (int i = 0; i < m; i++) {
+            points[i] = KMeans.copyPoint(data, sample[i]);
+            weights[i] = data.getWeight(sample[i]);
+        }
+        distances = new float[(int) ((long) m * (m - 1) / 2)];
+        for (int i = 0, d = 0; i < m; i++) {
+            for (int j = i + 1; j < m; j++, d++) {
+                double squareSum = 0;
+                for (int c = 0; c < points[i].length; c++) {
+                    double difference = points[i][c] - points[j][c];
+                    squareSum += difference*difference;
+                }
+                distances[d] = (float) Math.sqrt(squareSum);
+            }
+        }
+    }
+
+    /**
+     * Estimates the silhouette coefficient of a clusterization
+     * @param clustering clusterization of the dataset of the sample
+     * @return coefficient, in [-1, 1]; 0 for a single cluster
+     */
+    double of(final Clustering clustering) {
+        int m = sample.length;
+        int k = clustering.getK();
+        int[] labels = new int[m];
+        for (int i = 0; i < m; i++) {
+            labels[i] = clustering.getLabel(sample[i]);
+        }
+
+        // weighted sum of the distances of every sampled point from the sampled points of every cluster
+        double[][] sums = new double[m][k];
+        for (int i = 0, d = 0; i < m; i++) {
+            for (int j = i + 1; j < m; j++, d++) {
+                sums[i][labels[j]] += weights[j] * distances[d];
+                sums[j][labels[i]] += weights[i] * distances[d];
+            }
+        }
+        double[] clusterWeights = new double[k];
+        for (int i = 0; i < m; i++) {
+            clusterWeights[labels[i]] += weights[i];
+        }
+
+        double total = 0, totalWeight = 0;
+        for (int i = 0; i < m; i++) {
+            totalWeight += weights[i];
+            double ownWeight = clusterWeights[labels[i]] - weights[i];
+            if (ownWeight <= 0) {
+                continue;   // the silhouette of a point alone in its cluster is 0
+            }
+            double a = sums[i][labels[i]] / ownWeight;
+            double b = Double.POSITIVE_INFINITY;
+            for (int c = 0; c < k; c++) {
+                if (c != labels[i] && clusterWeights[c] > 0) {
+                    b = Math.min(b, sums[i][c] / clusterWeights[c]);
+                }
+            }
+            if (b == Double.POSITIVE_INFINITY || Math.max(a, b) == 0) {
+                continue;
+            }
+            total += weights[i] * (b - a) / Math.max(a, b);
+        }
+        return (totalWeight == 0) ? 0 : total / totalWeight;
+    }
+}
@@ -0,0 +1,51 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Fork/join action that executes a body for every slice in a range of slices, splitting the range in halves
+ */
+final class SliceAction extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final IntConsumer body;
+    private final int from, to;
+
+    /**
+     * Constructor
+     * @param body body to execute for every slice, with the index of the slice
+     * @param from first slice (inclusive)
+     * @param to last slice (exclusive)
+     */
+    private SliceAction(final IntConsumer body, int from, int to) {
+        this.body = body;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from == 1) {
+            body.accept(from);
+        } else {
+            int middle = (from + to) >>> 1;
+            invokeAll(new SliceAction(body, from, middle), new SliceAction(body, middle, to));
+        }
+    }
+
+    /**
+     * Executes a body for every slice
+     * @param slices number of slices
+     * @param body body to execute for every slice, with the index of the slice
+     * @param pool pool on which the slices are executed in parallel, null to execute them in order on the current thread
+     */
+    static void run(int slices, final IntConsumer body, final ForkJoinPool pool) {
+        if (pool == null || slices == 1) {
+            for (int s = 0; s < slices; s++) {
+                body.accept(s);
+            }
+        } else if (slices > 1) {
+            pool.invoke(new SliceAction(body, 0, slices));
+        }
+    }
+}
@@ -0,0 +1,29 @@
+/**
+ * Reasons why the iterations of a k-means clusterization stop
+ */
+public enum StopReason {
+    /**
+     * No coordinate of a centroid has changed more than the tolerance
+     */
+    CENTROIDS_CONVERGED,
+
+    /**
+     * The relative change of the inertia is lower than the inertia tolerance
+     */
+    INERTIA_CONVERGED,
+
+    /**
+     * The fraction of the points that have changed cluster is lower than the reassignment tolerance
+     */
+    REASSIGNMENTS_CONVERGED,
+
+    /**
+     * The maximum number of iterations has been reached
+     */
+    MAX_ITERATIONS,
+
+    /**
+     * The run of a multi-start clusterization has been cancelled because its inertia was behind the others
+     */
+    CANCELLED
+}
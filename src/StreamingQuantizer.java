@@ -0,0 +1,422 @@
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Colour quantization of an image with k-means that never holds the whole image in memory: the image is read in tiles
+ * of full rows through the region support of ImageReader, every iteration accumulates the centroid statistics tile by
+ * tile, and the quantized image is written as PNG tile by tile. The peak heap is bounded by the size of a tile, not of
+ * the image.
+ * The initial centroids are chosen by the seeding strategy on a random sample of the pixels.
+ * The image is decoded only once, by the sampling: its tiles are spilled to a temporary file of 3 bytes per pixel,
+ * from which the iterations and the writing read them back. The formats that can't decode a region independently
+ * (e.g. JPEG) decode the rows above it again for every tile, so higher tiles mean a faster first pass
+ */
+public final class StreamingQuantizer implements AutoCloseable {
+    /**
+     * Default number of rows of a tile
+     */
+    public static final int DEFAULT_TILE_HEIGHT = 256;
+
+    /**
+     * Default maximum number of iterations: every iteration reads the whole image back from the spill file
+     */
+    public static final int DEFAULT_MAX_ITERATIONS = 100;
+
+    /**
+     * Number of pixels sampled for the seeding
+     */
+    private static final int SAMPLE_SIZE = 1 << 16;
+
+    /**
+     * Number of rows of a tile
+     */
+    private final int tileHeight;
+
+    /**
+     * Pool on which the tiles are processed, null for the sequential execution
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Strategy of choice of the initial centroids
+     */
+    private SeedingStrategy seedingStrategy = SeedingStrategy.FARTHEST_POINT;
+
+    /**
+     * Seed of the sampling and of the seeding
+     */
+    private long seed = 0;
+
+    /**
+     * Maximum change of a centroid (in every direction) to be considered unchanged
+     */
+    private float tolerance = KMeans.tolerance;
+
+    /**
+     * Maximum number of iterations
+     */
+    private int maxIterations = DEFAULT_MAX_ITERATIONS;
+
+    /**
+     * Constructor
+     * @param tileHeight number of rows of a tile
+     * @param parallelism number of threads that process a tile (1 for the sequential processing), on a dedicated pool
+     *                    shut down by {@link #close()}
+     * @throws IllegalArgumentException if tile height or parallelism are < 1
+     */
+    public StreamingQuantizer(int tileHeight, int parallelism) throws IllegalArgumentException {
+        if (tileHeight < 1) {
+            throw new IllegalArgumentException("Tile height must be positive");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.tileHeight = tileHeight;
+        this.pool = (parallelism == 1) ? null : new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Shuts down the pool that processes the tiles, if any: after it, the parallel quantizations are rejected
+     */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Sets the strategy of choice of the initial centroids, that is applied to a random sample of the pixels
+     * @param seedingStrategy strategy
+     * @throws NullPointerException if the strategy is null
+     */
+    public void setSeedingStrategy(final SeedingStrategy seedingStrategy) throws NullPointerException {
+        if (seedingStrategy == null) {
+            throw new NullPointerException("Seeding strategy can't be null");
+        }
+        this.seedingStrategy = seedingStrategy;
+    }
+
+    /**
+     * Sets the seed of the sampling and of the seeding, so that the quantization is reproducible
+     * @param seed seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the maximum change of a centroid (in every direction) to be considered unchanged: the iterations stop when
+     * no centroid changes more than it
+     * @param tolerance tolerance, non-negative (default {@link KMeans#tolerance})
+     * @throws IllegalArgumentException if the tolerance is negative
+     */
+    public void setTolerance(float tolerance) throws IllegalArgumentException {
+        if (!(tolerance >= 0)) {
+            throw new IllegalArgumentException("Tolerance can't be negative");
+        }
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Sets the maximum number of iterations, after which the iterations stop even if the centroids are still changing
+     * @param maxIterations maximum number of iterations (default {@link #DEFAULT_MAX_ITERATIONS})
+     * @throws IllegalArgumentException if max iterations is < 1
+     */
+    public void setMaxIterations(int maxIterations) throws IllegalArgumentException {
+        if (maxIterations < 1) {
+            throw new IllegalArgumentException("Max iterations must be positive");
+        }
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Quantizes an image to k colours and saves it as PNG
+     * @param k number of colours
+     * @param inputPath path of the image in the filesystem
+     * @param outputPath path of the quantized image in the filesystem
+     * @return colours (centroids in the RGB space)
+     * @throws IOException if an error occurs reading or writing the files, or the format of the image is not supported
+     * @throws IllegalArgumentException if k is < 1 or the image has less than k pixels
+     * @throws NullPointerException if a path is null
+     */
+    public Point[] quantize(int k, String inputPath, String outputPath) throws IOException, IllegalArgumentException, NullPointerException {
+        if (inputPath == null || outputPath == null) {
+            throw new NullPointerException("Paths can't be null");
+        }
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+
+        try (ImageInputStream input = ImageIO.createImageInputStream(new File(inputPath))) {
+            if (input == null) {
+                throw new IOException("Can't read " + inputPath);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, false, true);
+                return quantize(k, reader, outputPath);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Quantizes the image of a reader to k colours and saves it as PNG
+     * @param k number of colours
+     * @param reader reader of the image
+     * @param outputPath path of the quantized image in the filesystem
+     * @return colours
+     * @throws IOException if an error occurs reading or writing
+     * @throws IllegalArgumentException if the image has less than k pixels
+     */
+    private Point[] quantize(int k, final ImageReader reader, String outputPath) throws IOException, IllegalArgumentException {
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+        if ((long) width * height < k) {
+            throw new IllegalArgumentException("Not enough points for this k (k=" + k + ")");
+        }
+
+        try (Tile tile = new Tile(reader, width, Math.min(tileHeight, height))) {
+            return quantize(k, tile, height, outputPath);
+        }
+    }
+
+    /**
+     * Quantizes the image of a tile to k colours and saves it as PNG
+     * @param k number of colours
+     * @param tile tile of the image, not read yet
+     * @param height height of the image
+     * @param outputPath path of the quantized image in the filesystem
+     * @return colours
+     * @throws IOException if an error occurs reading or writing
+     */
+    private Point[] quantize(int k, final Tile tile, int height, String outputPath) throws IOException {
+        int width = tile.width;
+        float[] centroids = KMeans.flatten(Seeding.initialCentroids(seedingStrategy, k, sample(tile, height, k), seed, pool));
+        float[] newCentroids = new float[centroids.length];
+        double[] sum = new double[centroids.length];
+        double[] clustersWeight = new double[k];
+        int[] clusterization = new int[tile.capacity()];
+        UpdateTask fullTask = new UpdateTask(centroids, tile, clusterization, k, 0, tile.capacity(), pool != null, null);
+        int lastRows = height % tile.rows;
+        UpdateTask lastTask = (lastRows == 0) ? fullTask : new UpdateTask(centroids, tile, clusterization, k, 0, lastRows * width, pool != null, null);
+
+        boolean stop = false;
+        for (int iteration = 0; iteration < maxIterations && !stop; iteration++) {
+            Arrays.fill(sum, 0);
+            Arrays.fill(clustersWeight, 0);
+            for (int y = 0; y < height; y += tile.rows) {
+                UpdateTask task = tile.read(y, height) == tile.rows ? fullTask : lastTask;
+                KMeans.invoke(task, pool);
+                for (int i = 0; i < sum.length; i++) {
+                    sum[i] += task.sum[i];
+                }
+                for (int c = 0; c < k; c++) {
+                    clustersWeight[c] += task.clustersWeight[c];
+                }
+            }
+
+            stop = true;
+            for (int c = 0, offset = 0; c < k; c++, offset += 3) {
+                for (int j = 0; j < 3; j++) {
+                    newCentroids[offset + j] = (clustersWeight[c] == 0) ? centroids[offset + j] : (float) (sum[offset + j] / clustersWeight[c]);
+                    stop &= Math.abs(newCentroids[offset + j] - centroids[offset + j]) <= tolerance;
+                }
+            }
+            if (!stop) {
+                System.arraycopy(newCentroids, 0, centroids, 0, centroids.length);
+            }
+        }
+
+        byte[] palette = new byte[3 * k];
+        Point[] colours = new Point[k];
+        for (int c = 0; c < k; c++) {
+            for (int j = 0; j < 3; j++) {
+                palette[3 * c + j] = (byte) Math.min(255, (int) centroids[3 * c + j]);
+            }
+            colours[c] = new Point(new float[]{centroids[3 * c], centroids[3 * c + 1], centroids[3 * c + 2]});
+        }
+
+        try (PngWriter writer = new PngWriter(new BufferedOutputStream(new FileOutputStream(outputPath)), width, height)) {
+            byte[] row = new byte[3 * width];
+            for (int y = 0; y < height; y += tile.rows) {
+                int rows = tile.read(y, height);
+                KMeans.invoke(rows == tile.rows ? fullTask : lastTask, pool);
+                for (int r = 0; r < rows; r++) {
+                    for (int x = 0; x < width; x++) {
+                        System.arraycopy(palette, 3 * clusterization[r * width + x], row, 3 * x, 3);
+                    }
+                    writer.writeRow(row);
+                }
+            }
+        }
+        return colours;
+    }
+
+    /**
+     * Samples (reservoir sampling) pixels of the image, reading it tile by tile: it is the first pass, that decodes the
+     * image and spills it
+     * @param tile tile of the image
+     * @param height height of the image
+     * @param k number of colours
+     * @return sample of at least k pixels
+     * @throws IOException if an error occurs reading
+     */
+    private ColumnarDataset sample(final Tile tile, int height, int k) throws IOException {
+        long numPoints = (long) tile.width * height;
+        int size = (int) Math.min(numPoints, Math.max(SAMPLE_SIZE, k));
+        ColumnarDataset sample = new ColumnarDataset(Domain.RGB(), size);
+        Random random = new Random(seed);
+        long seen = 0;
+        for (int y = 0; y < height; y += tile.rows) {
+            int tilePoints = tile.read(y, height) * tile.width;
+            for (int p = 0; p < tilePoints; p++, seen++) {
+                long slot = (seen < size) ? seen : (long) (random.nextDouble() * (seen + 1));
+                if (slot < size) {
+                    for (int j = 0; j < 3; j++) {
+                        sample.setValue((int) slot, j, tile.getValue(p, j));
+                            // cannot throws exception because colours are always in the RGB domain
+                    }
+                }
+            }
+        }
+        return sample;
+    }
+
+    /**
+     * Dataset of the colours of a tile of full rows of an image, stored row by row. The first pass over the image
+     * decodes the tiles and spills them to a temporary file (deleted when the tile is closed), from which the next
+     * passes read them
+     */
+    private static final class Tile implements Dataset, Closeable {
+        private static final Domain RGB = Domain.RGB();
+
+        private final ImageReader reader;
+        private final ImageReadParam param;
+        private final int width, rows;
+
+        /**
+         * Colours of the pixels of the tile: the red, green and blue of the i-th pixel are at 3*i, 3*i + 1 and 3*i + 2
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * Temporary file of the decoded image, with the same layout of the buffer
+         */
+        private final FileChannel spill;
+
+        /**
+         * True when the whole image has been spilled
+         */
+        private boolean spilled = false;
+        private int size = 0;
+
+        /**
+         * Constructor
+         * @param reader reader of the image
+         * @param width width of the image
+         * @param rows number of rows of a tile
+         * @throws IOException if the temporary file can't be created
+         */
+        Tile(final ImageReader reader, int width, int rows) throws IOException {
+            this.reader = reader;
+            this.param = reader.getDefaultReadParam();
+            this.width = width;
+            this.rows = rows;
+            this.buffer = ByteBuffer.allocate(3 * width * rows);
+            this.spill = FileChannel.open(Files.createTempFile("kmeans", ".rgb"), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+        }
+
+        /**
+         * Reads the tile that starts at a row: until the whole image has been spilled the tiles must be read in order,
+         * from the first row
+         * @param y first row of the tile
+         * @param height height of the image
+         * @return number of rows read (less than the rows of a tile only at the bottom of the image)
+         * @throws IOException if an error occurs reading or spilling
+         */
+        int read(int y, int height) throws IOException {
+            int tileRows = Math.min(rows, height - y);
+            long position = 3L * width * y;
+            buffer.clear().limit(3 * width * tileRows);
+            if (spilled) {
+                while (buffer.hasRemaining()) {
+                    if (spill.read(buffer, position + buffer.position()) < 0) {
+                        throw new IOException("Truncated spill file");
+                    }
+                }
+            } else {
+                param.setSourceRegion(new Rectangle(0, y, width, tileRows));
+                BufferedImage img = reader.read(0, param);
+                int[] row = new int[width];
+                for (int r = 0; r < tileRows; r++) {
+                    Image.readRow(img, r, row, 0);
+                    for (int x = 0; x < width; x++) {
+                        buffer.put((byte) (row[x] >> 16)).put((byte) (row[x] >> 8)).put((byte) row[x]);
+                    }
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    spill.write(buffer, position + buffer.position());
+                }
+                spilled = (y + tileRows == height);
+            }
+            size = width * tileRows;
+            return tileRows;
+        }
+
+        /**
+         * @return maximum number of pixels of a tile
+         */
+        int capacity() {
+            return width * rows;
+        }
+
+        @Override
+        public Domain getDomain() {
+            return RGB;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public float getValue(int index, int dimension) {
+            return buffer.get(3 * index + dimension) & 0xFF;
+        }
+
+        /**
+         * Deletes the spill file
+         * @throws IOException if an error occurs closing it
+         */
+        @Override
+        public void close() throws IOException {
+            spill.close();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+import net.jcip.annotations.Immutable;
+
+import java.util.Arrays;
+
+/**
+ * Represents the result of a sweep of k-means clusterizations of the same dataset over several values of k (see
+ * {@link KMeans#sweep(int[], Dataset, java.util.function.Consumer)}): for every k, in increasing order, the inertia,
+ * the estimate of the silhouette coefficient and the computation time, e.g. for the elbow method
+ */
+@Immutable
+public final class Sweep {
+    private final int[] ks;
+    private final double[] inertia;
+    private final double[] silhouette;
+
+    /**
+     * Computation time of every clusterization, in nanoseconds
+     */
+    private final long[] times;
+
+    /**
+     * Constructor. The arrays are not copied, because the sweep produces them only for this object
+     * @param ks values of k, in increasing order
+     * @param inertia inertia of the clusterization of every k
+     * @param silhouette estimate of the silhouette coefficient of the clusterization of every k
+     * @param times computation time of the clusterization of every k, in nanoseconds
+     */
+    Sweep(final int[] ks, final double[] inertia, final double[] silhouette, final long[] times) {
+        this.ks = ks;
+        this.inertia = inertia;
+        this.silhouette = silhouette;
+        this.times = times;
+    }
+
+    /**
+     * @return number of values of k
+     */
+    public int size() {
+        return ks.length;
+    }
+
+    /**
+     * @return values of k, in increasing order
+     */
+    public int[] getKs() {
+        return Arrays.copyOf(ks, ks.length);
+    }
+
+    /**
+     * Get a value of k
+     * @param index index of the value (0-indexed)
+     * @return k
+     * @throws IndexOutOfBoundsException if the index is <0 or >=size
+     */
+    public int getK(int index) throws IndexOutOfBoundsException {
+        return ks[index];
+    }
+
+    /**
+     * Get the inertia of the clusterization of a value of k
+     * @param index index of the value (0-indexed)
+     * @return inertia
+     * @throws IndexOutOfBoundsException if the index is <0 or >=size
+     */
+    public double getInertia(int index) throws IndexOutOfBoundsException {
+        return inertia[index];
+    }
+
+    /**
+     * Get the estimate of the silhouette coefficient of the clusterization of a value of k
+     * @param index index of the value (0-indexed)
+     * @return coefficient in [-1, 1], NaN if it has not been estimated
+     * @throws IndexOutOfBoundsException if the index is <0 or >=size
+     */
+    public double getSilhouette(int index) throws IndexOutOfBoundsException {
+        return silhouette[index];
+    }
+
+    /**
+     * Get the computation time of the clusterization of a value of k (seeding and iterations)
+     * @param index index of the value (0-indexed)
+     * @return time, in seconds
+     * @throws IndexOutOfBoundsException if the index is <0 or >=size
+     */
+    public double getTime(int index) throws IndexOutOfBoundsException {
+        return times[index] / 1e9;
+    }
+}
@@ -0,0 +1,612 @@
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork/join task for an iteration of k-means: it assigns every point of a slice to the nearest centroid and collects,
+ * for the same slice, the per-cluster (weighted) sums and weights needed to compute the new centroids.
+ * A slice is split in halves until it has at most SLICE_SIZE points, so the partial results are always merged in the
+ * same order, both when the task is executed in parallel on a pool and when it is executed on the calling thread.
+ * The whole tree of tasks, with its buffers, is built once per clusterization and reused at every iteration, so an
+ * iteration doesn't allocate anything
+ */
+final class UpdateTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Maximum number of points processed by a single task without further splitting
+     */
+    static final int SLICE_SIZE = 1 << 14;
+
+    /**
+     * Fractional bits of the fixed-point centroids of the integer kernel: the squared distance of three components in
+     * [0, 255] with 6 fractional bits fits in an int
+     */
+    private static final int FIXED_BITS = 6;
+
+    /**
+     * True if the colours of an RGBDataset are assigned by the brute force strategy with the integer kernel, enabled
+     * with the system property kmeans.fixedpoint=true: it can assign differently from the other strategies the colours
+     * almost equidistant from two centroids, so by default they are assigned with the floating-point arithmetic of all
+     * the other datasets
+     */
+    static final boolean FIXED_POINT = Boolean.getBoolean("kmeans.fixedpoint");
+
+    /**
+     * Centroids of clusters, flattened: the j-th coordinate of the c-th centroid is at c*dimension + j
+     */
+    private final float[] centroids;
+    private final Dataset data;
+
+    /**
+     * Columns of the points if they are in a ColumnarDataset and the SIMD kernel is available, null otherwise
+     */
+    private final float[][] columns;
+
+    /**
+     * Channels of the colours if the points are in an RGBDataset and they are assigned with the integer kernel (see
+     * FIXED_POINT), null otherwise
+     */
+    private final byte[][] channels;
+    private final int[] clusterization;
+    private final int k, dimension;
+    private final int from, to;
+    private final boolean parallel;
+
+    /**
+     * True if the points are assigned with the Manhattan distance, false with the euclidean one
+     */
+    private final boolean manhattan;
+
+    /**
+     * Distance bounds of the Hamerly assignment, null for the brute force assignment
+     */
+    private final HamerlyBounds bounds;
+
+    /**
+     * True if the points are already assigned (by the kd-tree filtering), so the task only collects their sums and
+     * weights
+     */
+    private final boolean assigned;
+
+    /**
+     * Sub-tasks, null if this task processes its slice directly
+     */
+    private final UpdateTask left, right;
+
+    /**
+     * Sum of the coordinates of the points of the slice assigned to each cluster, flattened as the centroids
+     */
+    final double[] sum;
+
+    /**
+     * Total weight (number of points, if they are not weighted) of the points of the slice assigned to each cluster
+     */
+    final double[] clustersWeight;
+
+    /**
+     * Weighted sum of the squared distances (the Manhattan distances for the Manhattan assignment) of the points of the
+     * slice from their assigned centroid
+     */
+    double inertia;
+
+    /**
+     * Number of points of the slice whose cluster has changed
+     */
+    int reassignments;
+
+    /**
+     * Coordinates of the point under assignment, used when the dimension is not 3
+     */
+    private final float[] point;
+
+    /**
+     * Clusters of the points of the slice before the SIMD assignment, null if it is not used
+     */
+    private final int[] previousClusterization;
+
+    /**
+     * Fixed-point centroids, integer sums of the components and number of points of every cluster for the integer
+     * kernel, null if it is not used
+     */
+    private final int[] fixedCentroids;
+    private final long[] channelSums;
+    private final int[] counts;
+
+    /**
+     * Constructor. It builds also all the sub-tasks
+     * @param centroids buffer of the centroids, read at every iteration
+     * @param data points to be assigned
+     * @param clusterization clusterization, where the assignment of the slice is written
+     * @param k number of clusters
+     * @param from first index of the slice (inclusive)
+     * @param to last index of the slice (exclusive)
+     * @param parallel true if the sub-tasks have to be forked, false if they have to be executed on the current thread
+     * @param bounds distance bounds for the Hamerly assignment, null for the brute force assignment
+     */
+    UpdateTask(final float[] centroids, final Dataset data, int[] clusterization, int k, int from, int to, boolean parallel, final HamerlyBounds bounds) {
+        this(centroids, data, clusterization, k, from, to, parallel, bounds, false);
+    }
+
+    /**
+     * Constructor. It builds also all the sub-tasks
+     * @param centroids buffer of the centroids, read at every iteration
+     * @param data points to be assigned
+     * @param clusterization clusterization, where the assignment of the slice is written
+     * @param k number of clusters
+     * @param from first index of the slice (inclusive)
+     * @param to last index of the slice (exclusive)
+     * @param parallel true if the sub-tasks have to be forked, false if they have to be executed on the current thread
+     * @param bounds distance bounds for the Hamerly assignment, null for the brute force assignment (and the Manhattan one)
+     * @param manhattan true to assign the points with the Manhattan distance, false with the euclidean one
+     */
+    UpdateTask(final float[] centroids, final Dataset data, int[] clusterization, int k, int from, int to, boolean parallel, final HamerlyBounds bounds, boolean manhattan) {
+        this(centroids, data, clusterization, k, from, to, parallel, bounds, manhattan, false);
+    }
+
+    /**
+     * Constructor. It builds also all the sub-tasks
+     * @param centroids buffer of the centroids, read at every iteration
+     * @param data points to be assigned
+     * @param clusterization clusterization, where the assignment of the slice is written (or read, if it is assigned)
+     * @param k number of clusters
+     * @param from first index of the slice (inclusive)
+     * @param to last index of the slice (exclusive)
+     * @param parallel true if the sub-tasks have to be forked, false if they have to be executed on the current thread
+     * @param bounds distance bounds for the Hamerly assignment, null for the brute force assignment (and the Manhattan one)
+     * @param manhattan true to assign the points with the Manhattan distance, false with the euclidean one
+     * @param assigned true if the points are assigned before every execution, so the task only collects their sums
+     */
+    UpdateTask(final float[] centroids, final Dataset data, int[] clusterization, int k, int from, int to, boolean parallel, final HamerlyBounds bounds, boolean manhattan, boolean assigned) {
+        this.centroids = centroids;
+        this.data = data;
+        this.columns = (!manhattan && !assigned && AssignmentKernel.SIMD != null && data instanceof ColumnarDataset) ? ((ColumnarDataset) data).getColumns() : null;
+        this.channels = (FIXED_POINT && !manhattan && !assigned && bounds == null && data instanceof RGBDataset) ? ((RGBDataset) data).getChannels() : null;
+        this.manhattan = manhattan;
+        this.clusterization = clusterization;
+        this.k = k;
+        this.dimension = data.getDomain().getDimension();
+        this.from = from;
+        this.to = to;
+        this.parallel = parallel;
+        this.bounds = bounds;
+        this.assigned = assigned;
+        this.sum = new double[k * dimension];
+        this.clustersWeight = new double[k];
+
+        if (to - from <= SLICE_SIZE) {
+            this.left = null;
+            this.right = null;
+            this.point = new float[dimension];
+            this.previousClusterization = (columns != null) ? new int[to - from] : null;
+            this.fixedCentroids = (channels != null) ? new int[3 * k] : null;
+            this.channelSums = (channels != null) ? new long[3 * k] : null;
+            this.counts = (channels != null) ? new int[k] : null;
+        } else {
+            int middle = (from + to) >>> 1;
+            this.left = new UpdateTask(centroids, data, clusterization, k, from, middle, parallel, bounds, manhattan, assigned);
+            this.right = new UpdateTask(centroids, data, clusterization, k, middle, to, parallel, bounds, manhattan, assigned);
+            this.point = null;
+            this.previousClusterization = null;
+            this.fixedCentroids = null;
+            this.channelSums = null;
+            this.counts = null;
+        }
+    }
+
+    @Override
+    protected void compute() {
+        if (left == null) {
+            if (assigned) {
+                computeSliceAssigned();
+            } else if (manhattan) {
+                if (dimension == 3) {
+                    computeSliceManhattan3();
+                } else {
+                    computeSliceManhattan();
+                }
+            } else if (bounds != null) {
+                computeSliceHamerly();
+            } else if (channels != null) {
+                computeSliceRgb();
+            } else if (columns != null) {
+                computeSliceSimd();
+            } else if (dimension == 3) {
+                computeSlice3();
+            } else {
+                computeSlice();
+            }
+            return;
+        }
+
+        left.reinitialize();
+        right.reinitialize();
+        if (parallel) {
+            left.fork();
+            right.compute();
+            left.join();
+        } else {
+            left.compute();
+            right.compute();
+        }
+
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] = left.sum[i] + right.sum[i];
+        }
+        for (int c = 0; c < k; c++) {
+            clustersWeight[c] = left.clustersWeight[c] + right.clustersWeight[c];
+        }
+        inertia = left.inertia + right.inertia;
+        reassignments = left.reassignments + right.reassignments;
+    }
+
+    /**
+     * Assigns the points of the slice and collects their sums and weights, for any dimension
+     */
+    private void computeSlice() {
+        clear();
+
+        for (int p = from; p < to; p++) {
+            for (int j = 0; j < dimension; j++) {
+                point[j] = data.getValue(p, j);
+            }
+
+            float minDistance = Float.POSITIVE_INFINITY;
+            int nearestCentroid = 0;
+            for (int c = 0, offset = 0; c < k; c++, offset += dimension) {
+                float distance = 0;
+                for (int j = 0; j < dimension; j++) {
+                    float difference = centroids[offset + j] - point[j];
+                    distance += difference*difference;
+                }
+                if (distance < minDistance) {
+                    minDistance = distance;
+                    nearestCentroid = c;
+                }
+            }
+            if (clusterization[p] != nearestCentroid) {
+                clusterization[p] = nearestCentroid;
+                reassignments++;
+            }
+
+            double weight = data.getWeight(p);
+            int offset = nearestCentroid * dimension;
+            for (int j = 0; j < dimension; j++) {
+                sum[offset + j] += weight * point[j];
+            }
+            clustersWeight[nearestCentroid] += weight;
+            inertia += weight * minDistance;
+        }
+    }
+
+    /**
+     * Assigns the points of the slice and collects their sums and weights, specialized for 3 dimensions (e.g. RGB)
+     */
+    private void computeSlice3() {
+        clear();
+
+        for (int p = from; p < to; p++) {
+            float x = data.getValue(p, 0);
+            float y = data.getValue(p, 1);
+            float z = data.getValue(p, 2);
+
+            float minDistance = Float.POSITIVE_INFINITY;
+            int nearestCentroid = 0;
+            for (int c = 0, offset = 0; c < k; c++, offset += 3) {
+                float dx = centroids[offset] - x;
+                float dy = centroids[offset + 1] - y;
+                float dz = centroids[offset + 2] - z;
+                float distance = dx*dx + dy*dy + dz*dz;
+                if (distance < minDistance) {
+                    minDistance = distance;
+                    nearestCentroid = c;
+                }
+            }
+            if (clusterization[p] != nearestCentroid) {
+                clusterization[p] = nearestCentroid;
+                reassignments++;
+            }
+
+            double weight = data.getWeight(p);
+            int offset = nearestCentroid * 3;
+            sum[offset] += weight * x;
+            sum[offset + 1] += weight * y;
+            sum[offset + 2] += weight * z;
+            clustersWeight[nearestCentroid] += weight;
+            inertia += weight * minDistance;
+        }
+    }
+
+    /**
+     * Assigns the points of the slice with the Manhattan distance and collects their sums and weights, for any dimension
+     */
+    private void computeSliceManhattan() {
+        clear();
+
+        for (int p = from; p < to; p++) {
+            for (int j = 0; j < dimension; j++) {
+                point[j] = data.getValue(p, j);
+            }
+
+            float minDistance = Float.POSITIVE_INFINITY;
+            int nearestCentroid = 0;
+            for (int c = 0, offset = 0; c < k; c++, offset += dimension) {
+                float distance = 0;
+                for (int j = 0; j < dimension; j++) {
+                    distance += Math.abs(centroids[offset + j] - point[j]);
+                }
+                if (distance < minDistance) {
+                    minDistance = distance;
+                    nearestCentroid = c;
+                }
+            }
+            if (clusterization[p] != nearestCentroid) {
+                clusterization[p] = nearestCentroid;
+                reassignments++;
+            }
+
+            double weight = data.getWeight(p);
+            int offset = nearestCentroid * dimension;
+            for (int j = 0; j < dimension; j++) {
+                sum[offset + j] += weight * point[j];
+            }
+            clustersWeight[nearestCentroid] += weight;
+            inertia += weight * minDistance;
+        }
+    }
+
+    /**
+     * Assigns the points of the slice with the Manhattan distance and collects their sums and weights, specialized for
+     * 3 dimensions (e.g. RGB)
+     */
+    private void computeSliceManhattan3() {
+        clear();
+
+        for (int p = from; p < to; p++) {
+            float x = data.getValue(p, 0);
+            float y = data.getValue(p, 1);
+            float z = data.getValue(p, 2);
+
+            float minDistance = Float.POSITIVE_INFINITY;
+            int nearestCentroid = 0;
+            for (int c = 0, offset = 0; c < k; c++, offset += 3) {
+                float distance = Math.abs(centroids[offset] - x) + Math.abs(centroids[offset + 1] - y) + Math.abs(centroids[offset + 2] - z);
+                if (distance < minDistance) {
+                    minDistance = distance;
+                    nearestCentroid = c;
+                }
+            }
+            if (clusterization[p] != nearestCentroid) {
+                clusterization[p] = nearestCentroid;
+                reassignments++;
+            }
+
+            double weight = data.getWeight(p);
+            int offset = nearestCentroid * 3;
+            sum[offset] += weight * x;
+            sum[offset + 1] += weight * y;
+            sum[offset + 2] += weight * z;
+            clustersWeight[nearestCentroid] += weight;
+            inertia += weight * minDistance;
+        }
+    }
+
+    /**
+     * Assigns the points of the slice with the SIMD kernel, then collects their sums and weights
+     */
+    private void computeSliceSimd() {
+        clear();
+        System.arraycopy(clusterization, from, previousClusterization, 0, to - from);
+        AssignmentKernel.SIMD.assign(columns, from, to, centroids, k, clusterization);
+
+        for (int p = from; p < to; p++) {
+            int nearestCentroid = clusterization[p];
+            if (nearestCentroid != previousClusterization[p - from]) {
+                reassignments++;
+            }
+            double weight = data.getWeight(p);
+            int offset = nearestCentroid * dimension;
+            float distance = 0;
+            for (int j = 0; j < dimension; j++) {
+                sum[offset + j] += weight * columns[j][p];
+                float difference = centroids[offset + j] - columns[j][p];
+                distance += difference*difference;
+            }
+            clustersWeight[nearestCentroid] += weight;
+            inertia += weight * distance;
+        }
+    }
+
+    /**
+     * Assigns the colours of the slice with integer arithmetic and collects their sums and weights: the components are
+     * read as unsigned bytes and the centroids are rounded to fixed-point values with FIXED_BITS fractional bits, so
+     * the distances are exact integers. The assignment can differ from the floating-point one only for a colour almost
+     * equidistant from two centroids, within the rounding of the centroids
+     */
+    private void computeSliceRgb() {
+        clear();
+        for (int i = 0; i < fixedCentroids.length; i++) {
+            fixedCentroids[i] = Math.round(centroids[i] * (1 << FIXED_BITS));
+            channelSums[i] = 0;
+        }
+        for (int c = 0; c < k; c++) {
+            counts[c] = 0;
+        }
+        byte[] red = channels[0];
+        byte[] green = channels[1];
+        byte[] blue = channels[2];
+        long squareSum = 0;
+
+        int p = from;
+        for (; p + 1 < to; p += 2) {      // two colours at a time, so every centroid is loaded once for both
+            int x0 = (red[p] & 0xFF) << FIXED_BITS, y0 = (green[p] & 0xFF) << FIXED_BITS, z0 = (blue[p] & 0xFF) << FIXED_BITS;
+            int x1 = (red[p + 1] & 0xFF) << FIXED_BITS, y1 = (green[p + 1] & 0xFF) << FIXED_BITS, z1 = (blue[p + 1] & 0xFF) << FIXED_BITS;
+            int minDistance0 = Integer.MAX_VALUE, minDistance1 = Integer.MAX_VALUE;
+            int nearest0 = 0, nearest1 = 0;
+            for (int c = 0, offset = 0; c < k; c++, offset += 3) {
+                int cx = fixedCentroids[offset], cy = fixedCentroids[offset + 1], cz = fixedCentroids[offset + 2];
+                int dx0 = cx - x0, dy0 = cy - y0, dz0 = cz - z0;
+                int dx1 = cx - x1, dy1 = cy - y1, dz1 = cz - z1;
+                int distance0 = dx0*dx0 + dy0*dy0 + dz0*dz0;
+                int distance1 = dx1*dx1 + dy1*dy1 + dz1*dz1;
+                if (distance0 < minDistance0) {
+                    minDistance0 = distance0;
+                    nearest0 = c;
+                }
+                if (distance1 < minDistance1) {
+                    minDistance1 = distance1;
+                    nearest1 = c;
+                }
+            }
+            squareSum += collect(p, nearest0, minDistance0) + collect(p + 1, nearest1, minDistance1);
+        }
+        if (p < to) {
+            int x = (red[p] & 0xFF) << FIXED_BITS, y = (green[p] & 0xFF) << FIXED_BITS, z = (blue[p] & 0xFF) << FIXED_BITS;
+            int minDistance = Integer.MAX_VALUE;
+            int nearestCentroid = 0;
+            for (int c = 0, offset = 0; c < k; c++, offset += 3) {
+                int dx = fixedCentroids[offset] - x;
+                int dy = fixedCentroids[offset + 1] - y;
+                int dz = fixedCentroids[offset + 2] - z;
+                int distance = dx*dx + dy*dy + dz*dz;
+                if (distance < minDistance) {
+                    minDistance = distance;
+                    nearestCentroid = c;
+                }
+            }
+            squareSum += collect(p, nearestCentroid, minDistance);
+        }
+
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] = channelSums[i];
+        }
+        for (int c = 0; c < k; c++) {
+            clustersWeight[c] = counts[c];
+        }
+        inertia = squareSum / (double) (1 << (2 * FIXED_BITS));
+    }
+
+    /**
+     * Assigns a colour to a cluster and adds it to the integer sums of the cluster
+     * @param p index of the colour
+     * @param nearestCentroid cluster
+     * @param distance fixed-point squared distance from the centroid
+     * @return distance
+     */
+    private int collect(int p, int nearestCentroid, int distance) {
+        if (clusterization[p] != nearestCentroid) {
+            clusterization[p] = nearestCentroid;
+            reassignments++;
+        }
+        int offset = nearestCentroid * 3;
+        channelSums[offset] += channels[0][p] & 0xFF;
+        channelSums[offset + 1] += channels[1][p] & 0xFF;
+        channelSums[offset + 2] += channels[2][p] & 0xFF;
+        counts[nearestCentroid]++;
+        return distance;
+    }
+
+    /**
+     * Assigns the points of the slice and collects their sums and weights, computing the distances from all the
+     * centroids only for the points whose bounds don't exclude a change of cluster. When they are computed, the cluster
+     * is chosen exactly as the brute force does. The distance of every point from its centroid is always computed, as
+     * the upper bound and for the inertia, so the inertia is the same of the brute force
+     */
+    private void computeSliceHamerly() {
+        clear();
+        float[] lowerBounds = bounds.lower;
+
+        for (int p = from; p < to; p++) {
+            for (int j = 0; j < dimension; j++) {
+                point[j] = data.getValue(p, j);
+            }
+
+            int nearestCentroid = clusterization[p];
+            float distance = squaredDistance(nearestCentroid);
+                // the exact distance from the centroid keeps the inertia exact, and it is the tightest upper bound
+            float upper = (float) Math.sqrt(distance);
+            float lower = lowerBounds[p] - ((nearestCentroid == bounds.maxShiftCentroid) ? bounds.secondMaxShift : bounds.maxShift);
+
+            if (!bounds.excludesChange(upper, lower, nearestCentroid)) {
+                float minDistance = Float.POSITIVE_INFINITY;
+                float secondMinDistance = Float.POSITIVE_INFINITY;
+                for (int c = 0; c < k; c++) {
+                    float candidate = squaredDistance(c);
+                    if (candidate < minDistance) {
+                        secondMinDistance = minDistance;
+                        minDistance = candidate;
+                        nearestCentroid = c;
+                    } else if (candidate < secondMinDistance) {
+                        secondMinDistance = candidate;
+                    }
+                }
+                if (clusterization[p] != nearestCentroid) {
+                    clusterization[p] = nearestCentroid;
+                    reassignments++;
+                }
+                distance = minDistance;
+                lower = (float) Math.sqrt(secondMinDistance);
+            }
+            lowerBounds[p] = lower;
+
+            double weight = data.getWeight(p);
+            int offset = nearestCentroid * dimension;
+            for (int j = 0; j < dimension; j++) {
+                sum[offset + j] += weight * point[j];
+            }
+            clustersWeight[nearestCentroid] += weight;
+            inertia += weight * distance;
+        }
+    }
+
+    /**
+     * Collects the sums and weights of the points of the slice, already assigned. The distances from their centroids
+     * are computed as the brute force does, so the inertia is the same
+     */
+    private void computeSliceAssigned() {
+        clear();
+
+        for (int p = from; p < to; p++) {
+            for (int j = 0; j < dimension; j++) {
+                point[j] = data.getValue(p, j);
+            }
+
+            int nearestCentroid = clusterization[p];
+            double weight = data.getWeight(p);
+            int offset = nearestCentroid * dimension;
+            for (int j = 0; j < dimension; j++) {
+                sum[offset + j] += weight * point[j];
+            }
+            clustersWeight[nearestCentroid] += weight;
+            inertia += weight * squaredDistance(nearestCentroid);
+        }
+    }
+
+    /**
+     * Calculates the squared euclidean distance between the point under assignment and a centroid, with the same
+     * arithmetic of the brute force assignment
+     * @param centroid index of the centroid
+     * @return distance
+     */
+    private float squaredDistance(int centroid) {
+        int offset = centroid * dimension;
+        float distance = 0;
+        for (int j = 0; j < dimension; j++) {
+            float difference = centroids[offset + j] - point[j];
+            distance += difference*difference;
+        }
+        return distance;
+    }
+
+    /**
+     * Resets the sums, weights, inertia and reassignments of the slice
+     */
+    private void clear() {
+        inertia = 0;
+        reassignments = 0;
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] = 0;
+        }
+        for (int c = 0; c < k; c++) {
+            clustersWeight[c] = 0;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * Runs all the checks of the project, that verify the guarantees on which the optimizations rely, and ends with an
+ * AssertionError at the first failed check. The folder test is a test source folder of the IntelliJ module, so the
+ * checks can be run from the IDE, or with
+ * <pre>
+ * javac -cp jcip-annotations-1.0.jar -d checks src/*.java test/*.java
+ * java -cp checks Checks
+ * </pre>
+ */
+public final class Checks {
+    private Checks() { }
+
+    public static void main(String[] args) throws Exception {
+        EquivalenceChecks.run();
+        PngChecks.run();
+        System.out.println("All checks passed");
+    }
+
+    /**
+     * Fails the running check if a condition is false
+     * @param condition condition that must hold
+     * @param message description of the failure
+     * @throws AssertionError if the condition is false
+     */
+    static void check(boolean condition, String message) throws AssertionError {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks that the clusterization doesn't depend on how it is computed: the same clusters for every assignment
+ * strategy with every distance metric, for the sequential and the parallel execution, also of the concurrent runs of
+ * a multi-start, and for the same colours stored in a ColumnarDataset or in an RGBDataset
+ */
+final class EquivalenceChecks {
+    /**
+     * Number of points of the datasets: several slices of UpdateTask, the last one partial
+     */
+    private static final int SIZE = 3 * UpdateTask.SLICE_SIZE + 1234;
+
+    private EquivalenceChecks() { }
+
+    /**
+     * Runs the checks
+     * @throws AssertionError if a check fails
+     */
+    static void run() throws AssertionError {
+        SetOfPoints<Point> points = setOfPoints(SIZE, 3, 1);
+        for (int k : new int[]{3, 16}) {
+            ArrayList<Cluster<Point>> reference = new KMeans<Point>().clusterize(k, points);
+            for (int parallelism : new int[]{1, 3}) {
+                try (KMeans<Point> kmeans = new KMeans<>(parallelism)) {
+                    compare(reference, kmeans.clusterize(k, points),
+                            "Set of points, parallelism " + parallelism + ", k = " + k);
+                }
+            }
+            System.out.println("Set of points, k = " + k + ": OK");
+        }
+
+        ColumnarDataset colours = colours(SIZE, 1);
+        RGBDataset rgb = new RGBDataset(SIZE, 1);
+        for (int p = 0; p < SIZE; p++) {
+            rgb.setRGB(p, ((int) colours.getValue(p, 0) << 16) | ((int) colours.getValue(p, 1) << 8)
+                    | (int) colours.getValue(p, 2));
+        }
+        ColumnarDataset coordinates = points(SIZE, 5, 2);
+        for (int k : new int[]{3, 16}) {
+            for (DistanceMetric metric : DistanceMetric.values()) {
+                check(k, metric, "Colours", colours, rgb);
+            }
+            for (DistanceMetric metric : new DistanceMetric[]{DistanceMetric.EUCLIDEAN, DistanceMetric.MANHATTAN,
+                                                              DistanceMetric.COSINE}) {
+                check(k, metric, "Points of R^5", coordinates);   // CIELAB is defined only for colours
+            }
+        }
+
+        DistanceMetric metric = DistanceMetric.EUCLIDEAN;
+        Clustering reference = clusterize(8, colours, metric, AssignmentStrategy.BRUTE_FORCE, 1, 3);
+        for (AssignmentStrategy strategy : AssignmentStrategy.values()) {
+            compare(reference, clusterize(8, colours, metric, strategy, 3, 3),
+                    "Colours, " + strategy + ", 3 runs, k = 8");
+        }
+        System.out.println("Multi-start, k = 8: OK");
+    }
+
+    /**
+     * Checks that every assignment strategy, sequential and parallel, gives the clusterization of the sequential
+     * brute force, for every representation of the same points
+     * @param k number of clusters
+     * @param metric distance metric
+     * @param name description of the points
+     * @param datasets the same points in different datasets, the first one clusterized by the reference
+     * @throws AssertionError if a clusterization differs
+     */
+    private static void check(int k, DistanceMetric metric, String name, final Dataset... datasets)
+            throws AssertionError {
+        Clustering reference = clusterize(k, datasets[0], metric, AssignmentStrategy.BRUTE_FORCE, 1, 1);
+        for (Dataset data : datasets) {
+            String description = name + ((data instanceof RGBDataset) ? " (RGBDataset), " : ", ") + metric;
+            for (AssignmentStrategy strategy : AssignmentStrategy.values()) {
+                for (int parallelism : new int[]{1, 3}) {
+                    compare(reference, clusterize(k, data, metric, strategy, parallelism, 1),
+                            description + ", " + strategy + ", parallelism " + parallelism + ", k = " + k);
+                }
+            }
+        }
+        System.out.println(name + ", k = " + k + ", " + metric + ": OK");
+    }
+
+    /**
+     * Clusterizes a dataset
+     * @param k number of clusters
+     * @param data points
+     * @param metric distance metric
+     * @param strategy assignment strategy
+     * @param parallelism number of threads
+     * @param runs number of runs, all completed
+     * @return clusterization
+     */
+    private static Clustering clusterize(int k, final Dataset data, DistanceMetric metric, AssignmentStrategy strategy,
+                                         int parallelism, int runs) {
+        try (KMeans<Point> kmeans = new KMeans<>(parallelism)) {
+            kmeans.setDistanceMetric(metric);
+            kmeans.setAssignmentStrategy(strategy);
+            kmeans.setSeed(7);
+            kmeans.setCancelThreshold(Double.POSITIVE_INFINITY);
+                // the cancellation of the runs depends on the progress of the concurrent runs
+            return kmeans.clusterize(k, data, runs);
+        }
+    }
+
+    /**
+     * Checks that a clusterization has the same labels, inertia and centroids of the reference one
+     * @param reference reference clusterization
+     * @param clustering clusterization to check
+     * @param description description of how the clusterization has been computed
+     * @throws AssertionError if the clusterizations differ
+     */
+    private static void compare(final Clustering reference, final Clustering clustering, String description)
+            throws AssertionError {
+        int[] expected = reference.getLabels();
+        int[] actual = clustering.getLabels();
+        int differences = 0;
+        for (int p = 0; p < expected.length; p++) {
+            if (expected[p] != actual[p]) {
+                differences++;
+            }
+        }
+        Checks.check(differences == 0, description + ": " + differences + " points in a different cluster");
+        Checks.check(reference.getInertia() == clustering.getInertia(),
+                description + ": inertia " + clustering.getInertia() + " instead of " + reference.getInertia());
+        for (int c = 0; c < reference.getK(); c++) {
+            float[] centroid = clustering.getCentroid(c).getCoordinates();
+            Checks.check(Arrays.equals(reference.getCentroid(c).getCoordinates(), centroid),
+                    description + ": different centroid " + c);
+        }
+    }
+
+    /**
+     * Checks that some clusters have the same points, in the same order, of the reference ones
+     * @param reference reference clusters
+     * @param clusters clusters to check
+     * @param description description of how the clusters have been computed
+     * @throws AssertionError if the clusters differ
+     */
+    private static void compare(final ArrayList<Cluster<Point>> reference, final ArrayList<Cluster<Point>> clusters,
+                                String description) throws AssertionError {
+        Checks.check(reference.size() == clusters.size(),
+                description + ": " + clusters.size() + " clusters instead of " + reference.size());
+        for (int c = 0; c < reference.size(); c++) {
+            Checks.check(reference.get(c).getPoints().equals(clusters.get(c).getPoints()),
+                    description + ": different points in cluster " + c);
+        }
+    }
+
+    /**
+     * Generates points around some random centres
+     * @param size number of points
+     * @param dimension dimension of the points
+     * @param seed seed of the generator
+     * @return points
+     */
+    private static SetOfPoints<Point> setOfPoints(int size, int dimension, long seed) {
+        ColumnarDataset data = points(size, dimension, seed);
+        SetOfPoints<Point> points = new SetOfPoints<>(data.getDomain());
+        float[] coordinates = new float[dimension];
+        for (int p = 0; p < size; p++) {
+            for (int j = 0; j < dimension; j++) {
+                coordinates[j] = data.getValue(p, j);
+            }
+            points.add(new Point(coordinates));
+        }
+        return points;
+    }
+
+    /**
+     * Generates colours with integer components, around some random colours
+     * @param size number of colours
+     * @param seed seed of the generator
+     * @return colours
+     */
+    private static ColumnarDataset colours(int size, long seed) {
+        Random random = new Random(seed);
+        float[][] centres = new float[12][3];
+        for (float[] centre : centres) {
+            for (int j = 0; j < 3; j++) {
+                centre[j] = random.nextInt(256);
+            }
+        }
+        ColumnarDataset data = new ColumnarDataset(Domain.RGB(), size);
+        for (int p = 0; p < size; p++) {
+            float[] centre = centres[random.nextInt(centres.length)];
+            for (int j = 0; j < 3; j++) {
+                int value = Math.round(centre[j] + 25 * (float) random.nextGaussian());
+                data.setValue(p, j, Math.max(0, Math.min(255, value)));
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Generates points around some random centres
+     * @param size number of points
+     * @param dimension dimension of the points
+     * @param seed seed of the generator
+     * @return points
+     */
+    private static ColumnarDataset points(int size, int dimension, long seed) {
+        Random random = new Random(seed);
+        float[][] centres = new float[10][dimension];
+        for (float[] centre : centres) {
+            for (int j = 0; j < dimension; j++) {
+                centre[j] = 100 * random.nextFloat();
+            }
+        }
+        ColumnarDataset data = new ColumnarDataset(Domain.Rn(dimension), size);
+        for (int p = 0; p < size; p++) {
+            float[] centre = centres[random.nextInt(centres.length)];
+            for (int j = 0; j < dimension; j++) {
+                data.setValue(p, j, centre[j] + 10 * (float) random.nextGaussian());
+            }
+        }
+        return data;
+    }
+}
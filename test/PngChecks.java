@@ -0,0 +1,119 @@
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks that the PNG files written by PngWriter, RGB row by row and palette-indexed with every bit depth, sequentially
+ * and in parallel stripes, are decoded by ImageIO to the written pixels
+ */
+final class PngChecks {
+    /**
+     * Size of the images: odd width, so that the last byte of the packed rows is partial, and more than a compression
+     * stripe of pixels, so that the parallel compression has several stripes
+     */
+    private static final int WIDTH = 1537, HEIGHT = 700;
+
+    private PngChecks() { }
+
+    /**
+     * Runs the checks
+     * @throws IOException if an error occurs writing or reading the temporary files
+     * @throws AssertionError if a check fails
+     */
+    static void run() throws IOException, AssertionError {
+        File file = File.createTempFile("kmeans", ".png");
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            checkRgb(file);
+            System.out.println("RGB PNG: OK");
+            for (int k : new int[]{2, 4, 16, 200}) {
+                checkIndexed(file, k, null);
+                checkIndexed(file, k, pool);
+                System.out.println("Indexed PNG, k = " + k + ": OK");
+            }
+        } finally {
+            pool.shutdown();
+            file.delete();
+        }
+    }
+
+    /**
+     * Writes an image row by row and checks its decoded pixels
+     * @param file temporary file
+     * @throws IOException if an error occurs writing or reading the file
+     * @throws AssertionError if a pixel differs
+     */
+    private static void checkRgb(final File file) throws IOException, AssertionError {
+        Random random = new Random(1);
+        int[] colours = new int[WIDTH * HEIGHT];
+        try (PngWriter writer = new PngWriter(new BufferedOutputStream(new FileOutputStream(file)), WIDTH, HEIGHT)) {
+            byte[] row = new byte[3 * WIDTH];
+            for (int y = 0, p = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++, p++) {
+                    colours[p] = (x < WIDTH / 2) ? random.nextInt(1 << 24) : (x * 7 + y * 3) & 0xFFFFFF;
+                    row[3 * x] = (byte) (colours[p] >> 16);
+                    row[3 * x + 1] = (byte) (colours[p] >> 8);
+                    row[3 * x + 2] = (byte) colours[p];
+                }
+                writer.writeRow(row);
+            }
+        }
+        compare(file, colours, "RGB PNG");
+    }
+
+    /**
+     * Writes a palette-indexed image of a clusterization and checks its decoded pixels
+     * @param file temporary file
+     * @param k number of colours
+     * @param pool pool of the compression, null for the sequential one
+     * @throws IOException if an error occurs writing or reading the file
+     * @throws AssertionError if a pixel differs
+     */
+    private static void checkIndexed(final File file, int k, final ForkJoinPool pool)
+            throws IOException, AssertionError {
+        Random random = new Random(k);
+        float[][] centroids = new float[k][];
+        int[] palette = new int[k];
+        for (int c = 0; c < k; c++) {
+            palette[c] = random.nextInt(1 << 24);
+            centroids[c] = new float[]{palette[c] >> 16, (palette[c] >> 8) & 0xFF, palette[c] & 0xFF};
+        }
+        int[] labels = new int[WIDTH * HEIGHT];
+        int[] colours = new int[labels.length];
+        for (int y = 0, p = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++, p++) {
+                labels[p] = (y < HEIGHT / 2) ? random.nextInt(k) : ((x / 13 + y / 17) % k);
+                colours[p] = palette[labels[p]];
+            }
+        }
+        Image.exportIndexed(new Clustering(centroids, labels, 0), file.getPath(), WIDTH, HEIGHT, pool);
+        compare(file, colours, "Indexed PNG, k = " + k + ((pool == null) ? "" : ", parallel"));
+    }
+
+    /**
+     * Decodes a PNG file with ImageIO and compares its pixels with the expected colours
+     * @param file PNG file
+     * @param colours expected colours as 0xRRGGBB, row by row
+     * @param description description of the image
+     * @throws IOException if an error occurs reading the file
+     * @throws AssertionError if the image can't be decoded or a pixel differs
+     */
+    private static void compare(final File file, final int[] colours, String description)
+            throws IOException, AssertionError {
+        BufferedImage img = ImageIO.read(file);
+        Checks.check(img != null, description + ": not decoded");
+        Checks.check(img.getWidth() == WIDTH && img.getHeight() == HEIGHT, description + ": wrong size");
+        for (int y = 0, p = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++, p++) {
+                int colour = img.getRGB(x, y) & 0xFFFFFF;
+                Checks.check(colour == colours[p], description + ": pixel (" + x + ", " + y + ") is "
+                        + Integer.toHexString(colour) + " instead of " + Integer.toHexString(colours[p]));
+            }
+        }
+    }
+}